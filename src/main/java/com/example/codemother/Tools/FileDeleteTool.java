@@ -2,6 +2,7 @@ package com.example.codemother.Tools;
 
 import cn.hutool.json.JSONObject;
 import com.example.codemother.constant.AppConstant;
+import com.example.codemother.utils.ProjectArchiveCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -47,6 +48,8 @@ public class FileDeleteTool extends BaseTool {
             }
             Files.delete(path);
             log.info("成功删除文件: {}", path.toAbsolutePath());
+            // 项目内容变化，失效下载压缩包缓存
+            ProjectArchiveCache.invalidate(path);
             return "文件删除成功: " + relativeFilePath;
         } catch (IOException e) {
             String errorMessage = "删除文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
@@ -2,6 +2,7 @@ package com.example.codemother.Tools;
 
 import cn.hutool.json.JSONObject;
 import com.example.codemother.constant.AppConstant;
+import com.example.codemother.utils.ProjectArchiveCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -52,6 +53,8 @@ public class FileModifyTool extends BaseTool {
             }
             Files.writeString(path, modifiedContent, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
             log.info("成功修改文件: {}", path.toAbsolutePath());
+            // 项目内容变化，失效下载压缩包缓存
+            ProjectArchiveCache.invalidate(path);
             return "文件修改成功: " + relativeFilePath;
         } catch (IOException e) {
             String errorMessage = "修改文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
@@ -3,6 +3,7 @@ package com.example.codemother.Tools;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.json.JSONObject;
 import com.example.codemother.constant.AppConstant;
+import com.example.codemother.utils.ProjectArchiveCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -49,6 +50,8 @@ public class FileWriteTool extends BaseTool {
                     StandardOpenOption.CREATE,
                     StandardOpenOption.TRUNCATE_EXISTING);
             log.info("成功写入文件: {}", path.toAbsolutePath());
+            // 项目内容变化，失效下载压缩包缓存
+            ProjectArchiveCache.invalidate(path);
             // 注意要返回相对路径，不能让 AI 把文件绝对路径返回给用户
             return "文件写入成功: " + relativeFilePath;
         } catch (IOException e) {
@@ -1,40 +1,76 @@
 package com.example.codemother.ai;
 
 import com.example.codemother.Tools.ToolManager;
+import com.example.codemother.ai.memory.TokenBudgetChatMemory;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.model.enums.CodeGenTypeEnum;
 import com.example.codemother.service.ChatHistoryService;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
-import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
 import com.example.codemother.ai.guardrail.PromptSafetyInputGuardrail;
 import com.example.codemother.ai.guardrail.RetryOutputGuardrail;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.example.codemother.config.SpringContextUtil;
 
+/**
+ * AI 代码生成服务工厂
+ * AiServices 代理（含模型、工具、护轨）无状态，按代码生成类型共享；每个应用只缓存一个轻量的对话记忆句柄，
+ * 通过 chatMemoryProvider 按 @MemoryId（appId）解析，首次读写记忆时才按 token 预算从数据库加载历史对话。
+ * 内存存储时消息在本地堆中，记忆句柄缓存按消息内容的估算字节数加权淘汰；Redis 存储时句柄不持有消息、大小基本固定，按句柄数量淘汰，
+ * 命中率、加载耗时、淘汰原因等统计通过 Micrometer 暴露（ai.chat.memory.*）。
+ *
+ * @author kkoma
+ */
 @Configuration
 @Slf4j
 public class AiCodeGeneratorServiceFactory {
 
+    /**
+     * 对话记忆保留的消息条数
+     */
+    private static final int MAX_MEMORY_MESSAGES = 20;
+
+    /**
+     * 单个记忆句柄（及消息对象头）的估算字节数
+     */
+    private static final int HANDLE_WEIGHT_BYTES = 512;
+
+    private static final int MESSAGE_OVERHEAD_BYTES = 64;
+
+    private static final String MEMORY_CACHE_NAME = "ai.chat.memory";
+
     @Autowired
     @Qualifier("openAiChatModelCustom")
     private ChatModel chatModel;
 
-    // 通过 SpringContextUtil 按需获取 prototype 模型，避免并发共享实例
+    // 通过 SpringContextUtil 获取 prototype 流式模型，每种生成类型一个实例（流式模型本身线程安全）
 
     @Autowired(required = false)
     private RedisChatMemoryStore redisChatMemoryStore;
@@ -45,6 +81,87 @@ public class AiCodeGeneratorServiceFactory {
     @Autowired
     private ToolManager toolManager;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 对话记忆句柄缓存的最大估算堆占用（MB），内存存储时生效
+     */
+    @Value("${ai.chat-memory.cache.max-weight-mb:256}")
+    private long chatMemoryCacheMaxWeightMb;
+
+    /**
+     * 对话记忆句柄缓存的最大句柄数，Redis 存储时生效
+     */
+    @Value("${ai.chat-memory.cache.max-handles:20000}")
+    private long chatMemoryCacheMaxHandles;
+
+    /**
+     * 单个应用对话记忆的 token 预算
+     */
+    @Value("${ai.chat-memory.token-budget:8000}")
+    private int chatMemoryTokenBudget;
+
+    /**
+     * 对话记忆句柄的空闲过期时间（分钟）
+     */
+    @Value("${ai.chat-memory.cache.expire-after-access-minutes:30}")
+    private long chatMemoryExpireMinutes;
+
+    /**
+     * 对话记忆存储：优先使用 Redis，未配置时所有应用共用一个内存存储
+     */
+    private ChatMemoryStore chatMemoryStore;
+
+    /**
+     * 按代码生成类型共享的 AI 服务实例
+     */
+    private final ConcurrentHashMap<CodeGenTypeEnum, AiCodeGeneratorService> serviceCache = new ConcurrentHashMap<>();
+
+    /**
+     * 应用对话记忆句柄缓存（appId -> 对话记忆）
+     */
+    private Cache<Long, ChatMemory> chatMemoryCache;
+
+    @PostConstruct
+    public void init() {
+        chatMemoryStore = (redisChatMemoryStore != null) ? redisChatMemoryStore : new InMemoryChatMemoryStore();
+        boolean inMemoryStore = chatMemoryStore instanceof InMemoryChatMemoryStore;
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(chatMemoryExpireMinutes))
+                .recordStats();
+        if (inMemoryStore) {
+            builder.maximumWeight(chatMemoryCacheMaxWeightMb * 1024 * 1024)
+                    .weigher((Long appId, ChatMemory memory) -> estimateWeight(appId));
+        } else {
+            builder.maximumSize(chatMemoryCacheMaxHandles);
+        }
+        chatMemoryCache = builder
+                // 淘汰监听在条目锁内同步执行，删除消息期间同一 appId 不会创建新句柄，不会误删新句柄刚加载的记忆；
+                // 重新登记权重（REPLACED）不触发，消息保持不变
+                .evictionListener((Long appId, ChatMemory memory, RemovalCause cause) -> {
+                    // 内存存储中的消息随句柄一起释放；Redis 中的消息保留，下次命中时无需查库
+                    if (appId != null && chatMemoryStore instanceof InMemoryChatMemoryStore) {
+                        chatMemoryStore.deleteMessages(appId);
+                    }
+                    Counter.builder(MEMORY_CACHE_NAME + ".evictions.by.cause")
+                            .description("对话记忆句柄按原因统计的淘汰次数")
+                            .tag("cause", cause.name())
+                            .register(meterRegistry)
+                            .increment();
+                    log.debug("对话记忆被淘汰，appId: {}, 原因: {}", appId, cause);
+                })
+                .build();
+        // 命中、未命中、加载耗时、淘汰次数
+        CaffeineCacheMetrics.monitor(meterRegistry, chatMemoryCache, MEMORY_CACHE_NAME);
+        if (inMemoryStore) {
+            Gauge.builder(MEMORY_CACHE_NAME + ".weighted.size", chatMemoryCache,
+                            cache -> cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                    .description("对话记忆句柄缓存的估算堆占用")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
 
     /**
      * 默认提供一个 Bean
@@ -63,37 +180,96 @@ public class AiCodeGeneratorServiceFactory {
     }
 
     /**
-     * 根据 appId 和代码生成类型获取服务（带缓存）
+     * 根据 appId 和代码生成类型获取服务（同一类型的服务共享，对话记忆按调用时的 appId 隔离）
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+        return serviceCache.computeIfAbsent(codeGenType, this::createAiCodeGeneratorService);
+    }
+
+    /**
+     * 获取应用的对话记忆句柄
+     */
+    private ChatMemory getChatMemory(Object memoryId) {
+        long appId = Long.parseLong(memoryId.toString());
+        return chatMemoryCache.get(appId, this::createChatMemory);
+    }
+
+    private ChatMemory createChatMemory(Long appId) {
+        // 创建句柄不访问数据库，首次读写记忆时才按 token 预算加载历史（Redis 中已有记忆时直接复用）
+        TokenBudgetChatMemory tokenBudgetMemory = new TokenBudgetChatMemory(appId, chatMemoryStore,
+                chatMemoryTokenBudget, MAX_MEMORY_MESSAGES,
+                () -> chatHistoryService.loadChatHistoryMessages(appId, chatMemoryTokenBudget));
+        return new WeighedChatMemory(appId, tokenBudgetMemory);
+    }
+
+    /**
+     * 估算记忆句柄的堆占用（仅内存存储）：句柄本身加上内存存储中该应用消息的大小
+     */
+    private int estimateWeight(Long appId) {
+        long bytes = HANDLE_WEIGHT_BYTES;
+        // 直接读取存储，不触发记忆的首次加载
+        for (ChatMessage message : chatMemoryStore.getMessages(appId)) {
+            bytes += MESSAGE_OVERHEAD_BYTES + 2L * TokenBudgetChatMemory.textLength(message);
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 消息变化后重新登记到缓存，使 Caffeine 按新的大小重新计算权重
+     */
+    private class WeighedChatMemory implements ChatMemory {
+
+        private final Long appId;
+
+        private final ChatMemory delegate;
+
+        private WeighedChatMemory(Long appId, ChatMemory delegate) {
+            this.appId = appId;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object id() {
+            return delegate.id();
+        }
+
+        @Override
+        public void add(ChatMessage message) {
+            delegate.add(message);
+            reweigh();
+        }
+
+        @Override
+        public List<ChatMessage> messages() {
+            return delegate.messages();
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+            reweigh();
+        }
+
+        private void reweigh() {
+            if (chatMemoryStore instanceof InMemoryChatMemoryStore) {
+                chatMemoryCache.asMap().replace(appId, this, this);
+            }
+        }
     }
 
     /**
      * 创建新的 AI 服务实例
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        // 根据 appId 构建独立的对话记忆
-        var memoryStore = (redisChatMemoryStore != null)
-                ? redisChatMemoryStore
-                : new InMemoryChatMemoryStore();
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(memoryStore)
-                .maxMessages(20)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+    private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("创建 AI 代码生成服务，类型: {}", codeGenType.getValue());
         // 根据代码生成类型选择不同的模型配置
         return switch (codeGenType) {
-            // Vue 项目生成使用推理模型（prototype，避免并发共享）
+            // Vue 项目生成使用推理模型
             case VUE_PROJECT -> {
                 StreamingChatModel reasoningStreamingChatModel = (StreamingChatModel) SpringContextUtil.getBean("reasoningStreamingChatModelPrototype");
                 yield AiServices.builder(AiCodeGeneratorService.class)
                         .streamingChatModel(reasoningStreamingChatModel)
-                        .chatMemoryProvider(memoryId -> chatMemory)
+                        .chatMemoryProvider(this::getChatMemory)
                         .tools(toolManager.getAllTools())
                         .inputGuardrails(new PromptSafetyInputGuardrail())
                         .outputGuardrails(new RetryOutputGuardrail())
@@ -102,13 +278,13 @@ public class AiCodeGeneratorServiceFactory {
                         ))
                         .build();
             }
-            // HTML 和多文件生成使用默认模型（prototype 流式）
+            // HTML 和多文件生成使用默认模型
             case HTML, MULTI_FILE -> {
                 StreamingChatModel openAiStreamingChatModel = (StreamingChatModel) SpringContextUtil.getBean("streamingChatModelPrototype");
                 yield AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
                         .streamingChatModel(openAiStreamingChatModel)
-                        .chatMemory(chatMemory)
+                        .chatMemoryProvider(this::getChatMemory)
                         .inputGuardrails(new PromptSafetyInputGuardrail())
                         .outputGuardrails(new RetryOutputGuardrail())
                         .build();
@@ -118,27 +294,4 @@ public class AiCodeGeneratorServiceFactory {
         };
     }
 
-    /**
-     * AI 服务实例缓存
-     */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
-            })
-            .build();
-
-    /**
-     * 构建缓存键
-     */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "_" + codeGenType.getValue();
-    }
-
-
 }
-
-
-
@@ -0,0 +1,256 @@
+package com.example.codemother.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按 token 预算裁剪的对话记忆
+ * 创建时不访问数据库，首次读写时才通过 historyLoader 从对话历史中按从新到旧加载，加载的历史受 token 预算和最大条数限制；
+ * 之后每次写入只按最大条数从最旧的消息开始淘汰，工具调用请求与其执行结果一起淘汰。
+ * 当前轮次（最后一条用户消息及之后的消息）不参与淘汰，工具调用循环中写入大量文件参数时也不会丢失本轮的用户指令。
+ * token 数按字符估算：中日韩字符约 1 个字符 1 个 token，其余约 4 个字符 1 个 token。
+ *
+ * @author kkoma
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    /**
+     * Markdown 代码块（```lang ... ```）
+     */
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```([\\w.+#-]*)[^\\n]*\\n(.*?)```", Pattern.DOTALL);
+
+    /**
+     * 每条消息的固定开销（角色、分隔符等）
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxTokens;
+
+    private final int maxMessages;
+
+    private final Supplier<List<ChatMessage>> historyLoader;
+
+    private volatile boolean hydrated;
+
+    /**
+     * @param id            记忆 ID（appId）
+     * @param store         对话记忆存储
+     * @param maxTokens     加载历史的 token 预算
+     * @param maxMessages   最大消息条数（当前轮次除外）
+     * @param historyLoader 历史消息加载器（按时间正序返回，首次使用且存储为空时调用）
+     */
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, int maxTokens, int maxMessages,
+                                 Supplier<List<ChatMessage>> historyLoader) {
+        this.id = id;
+        this.store = store;
+        this.maxTokens = maxTokens;
+        this.maxMessages = maxMessages;
+        this.historyLoader = historyLoader;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        ensureHydrated();
+        synchronized (this) {
+            List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+            if (message instanceof SystemMessage) {
+                SystemMessage existing = findSystemMessage(messages);
+                if (message.equals(existing)) {
+                    return;
+                }
+                if (existing != null) {
+                    messages.remove(existing);
+                }
+                // 系统消息始终放在最前面，不参与淘汰
+                messages.addFirst(message);
+            } else {
+                messages.add(message);
+            }
+            evict(messages, false);
+            store.updateMessages(id, messages);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        ensureHydrated();
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            store.deleteMessages(id);
+            hydrated = true;
+        }
+    }
+
+    /**
+     * 首次使用时加载历史；存储中已有消息（如 Redis 中的记忆）时直接复用
+     */
+    private void ensureHydrated() {
+        if (hydrated) {
+            return;
+        }
+        synchronized (this) {
+            if (hydrated) {
+                return;
+            }
+            if (store.getMessages(id).isEmpty()) {
+                List<ChatMessage> history = new ArrayList<>(historyLoader.get());
+                if (!history.isEmpty()) {
+                    evict(history, true);
+                    store.updateMessages(id, history);
+                }
+            }
+            hydrated = true;
+        }
+    }
+
+    /**
+     * 从最旧的非系统消息开始淘汰，当前轮次（最后一条用户消息及之后）始终保留
+     *
+     * @param messages         消息列表
+     * @param applyTokenBudget 是否同时按 token 预算淘汰（只用于加载历史）
+     */
+    private void evict(List<ChatMessage> messages, boolean applyTokenBudget) {
+        int totalTokens = 0;
+        if (applyTokenBudget) {
+            for (ChatMessage message : messages) {
+                totalTokens += estimateTokens(message);
+            }
+        }
+        int first = !messages.isEmpty() && messages.getFirst() instanceof SystemMessage ? 1 : 0;
+        int currentTurnStart = findLastUserMessage(messages);
+        if (currentTurnStart < 0) {
+            // 没有用户消息时至少保留最后一条
+            currentTurnStart = messages.size() - 1;
+        }
+        while (first < currentTurnStart
+                && (messages.size() > maxMessages || (applyTokenBudget && totalTokens > maxTokens))) {
+            totalTokens -= estimateTokens(messages.remove(first));
+            currentTurnStart--;
+            // 工具调用请求已淘汰，其后的工具执行结果不能单独保留
+            while (first < currentTurnStart && messages.get(first) instanceof ToolExecutionResultMessage) {
+                totalTokens -= estimateTokens(messages.remove(first));
+                currentTurnStart--;
+            }
+        }
+    }
+
+    private static int findLastUserMessage(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 估算消息的 token 数
+     */
+    public static int estimateTokens(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS + estimateTokens(text(message));
+        if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+            for (var request : aiMessage.toolExecutionRequests()) {
+                tokens += MESSAGE_OVERHEAD_TOKENS + estimateTokens(request.arguments());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算文本的 token 数
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 消息的文本内容（含工具调用参数的长度用于估算堆占用）
+     */
+    public static int textLength(ChatMessage message) {
+        String text = text(message);
+        int length = text == null ? 0 : text.length();
+        if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+            for (var request : aiMessage.toolExecutionRequests()) {
+                length += request.arguments() == null ? 0 : request.arguments().length();
+            }
+        }
+        return length;
+    }
+
+    private static String text(ChatMessage message) {
+        return switch (message) {
+            case UserMessage userMessage -> userMessage.hasSingleText() ? userMessage.singleText() : null;
+            case AiMessage aiMessage -> aiMessage.text();
+            case SystemMessage systemMessage -> systemMessage.text();
+            case ToolExecutionResultMessage toolMessage -> toolMessage.text();
+            default -> null;
+        };
+    }
+
+    /**
+     * 将文本中的代码块替换为简短说明（用于历史 AI 回复中整段输出的代码）
+     *
+     * @param text 原文本
+     * @return 压缩后的文本，没有代码块时原样返回
+     */
+    public static String compactCodeBlocks(String text) {
+        if (text == null || !text.contains("```")) {
+            return text;
+        }
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            String language = matcher.group(1).isEmpty() ? "text" : matcher.group(1);
+            long lines = matcher.group(2).lines().count();
+            String summary = String.format("[此前生成的 %s 代码共 %d 行，已省略]", language, lines);
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(summary));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.codemother.config;
 
+import com.example.codemother.core.cancel.CancellableHttpClient;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.Data;
@@ -28,6 +29,8 @@ public class ReasoningStreamingChatModelConfig {
         // final String modelName = "deepseek-reasoner";
         // final int maxTokens = 32768;
         return OpenAiStreamingChatModel.builder()
+                // 生成被取消时关闭模型响应流
+                .httpClientBuilder(new CancellableHttpClient.Builder())
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .modelName(modelName)
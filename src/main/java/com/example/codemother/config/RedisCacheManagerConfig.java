@@ -40,11 +40,9 @@ public class RedisCacheManagerConfig {
                 // .serializeValuesWith(RedisSerializationContext.SerializationPair
                 //         .fromSerializer(new GenericJackson2JsonRedisSerializer(objectMapper)));
         
+        // 精选应用列表（good_app_page）改由 GoodAppPageCache 两级缓存，不再经过 CacheManager
         return RedisCacheManager.builder(redisConnectionFactory)
                 .cacheDefaults(defaultConfig)
-                // 针对 good_app_page 配置5分钟过期
-                .withCacheConfiguration("good_app_page",
-                        defaultConfig.entryTtl(Duration.ofMinutes(5)))
                 .build();
     }
 }
@@ -23,8 +23,8 @@ public interface AppConstant {
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
     /**
-     * 应用部署域名
+     * 共享依赖目录（按 package.json / lockfile 哈希存放已安装的 node_modules）
      */
-    String CODE_DEPLOY_HOST = "http://localhost";
+    String NODE_MODULES_STORE_DIR = System.getProperty("user.dir") + "/tmp/node_modules_store";
 
 }
@@ -11,9 +11,11 @@ import com.example.codemother.common.DeleteRequest;
 import com.example.codemother.common.ResultUtils;
 import com.example.codemother.constant.AppConstant;
 import com.example.codemother.constant.UserConstant;
+import com.example.codemother.core.run.GenerationRunManager;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.exception.ThrowUtils;
+import com.example.codemother.manager.GoodAppPageCache;
 import com.example.codemother.model.dto.App.AppAddRequest;
 import com.example.codemother.model.dto.App.AppAdminUpdateRequest;
 import com.example.codemother.model.dto.App.AppQueryRequest;
@@ -27,7 +29,6 @@ import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
@@ -37,13 +38,16 @@ import com.example.codemother.service.AppService;
 import com.example.codemother.service.ChatHistoryService;
 import com.example.codemother.ratelimit.annotation.RateLimit;
 import com.example.codemother.ratelimit.enums.RateLimitType;
+import com.example.codemother.ratelimit.limiter.GenerationConcurrencyLimiter;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.File;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * 应用 控制层。
@@ -55,9 +59,23 @@ import java.util.Map;
 @RequestMapping("/app")
 public class AppController {
 
+    /**
+     * 生成流的心跳间隔
+     */
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(1);
+
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private GoodAppPageCache goodAppPageCache;
+
+    @Autowired
+    private GenerationConcurrencyLimiter generationConcurrencyLimiter;
+
+    @Autowired
+    private GenerationRunManager generationRunManager;
+
     @Autowired
     private AppService appService;
 
@@ -99,6 +117,9 @@ public class AppController {
         }
         boolean result = appService.removeById(id);
         boolean removedHistory = chatHistoryService.removeById(id);
+        if (AppConstant.GOOD_APP_PRIORITY.equals(oldApp.getPriority())) {
+            goodAppPageCache.invalidateAll();
+        }
         return ResultUtils.success(result && removedHistory);
     }
 
@@ -142,19 +163,23 @@ public class AppController {
      * @return 精选应用列表
      */
     @PostMapping("/good/list/page/vo")
-    @Cacheable(
-            value = "good_app_page",
-            key = "T(com.example.codemother.utils.CacheKeyUtils).generateKey(#appQueryRequest)",
-            condition = "#appQueryRequest.pageNum <= 10"
-    )
     public BaseResponse<Page<AppVO>> listGoodAppVOByPage(@RequestBody AppQueryRequest appQueryRequest) {
         ThrowUtils.throwIf(appQueryRequest == null, ErrorCode.PARAMS_ERROR);
         // 限制每页最多 20 个
         long pageSize = appQueryRequest.getPageSize();
         ThrowUtils.throwIf(pageSize > 20, ErrorCode.PARAMS_ERROR, "每页最多查询 20 个应用");
-        long pageNum = appQueryRequest.getPageNum();
         // 只查询精选的应用
         appQueryRequest.setPriority(AppConstant.GOOD_APP_PRIORITY);
+        // 前 10 页走两级缓存（本地 + Redis）
+        if (appQueryRequest.getPageNum() <= 10) {
+            return ResultUtils.success(goodAppPageCache.get(appQueryRequest, () -> queryGoodAppVOPage(appQueryRequest)));
+        }
+        return ResultUtils.success(queryGoodAppVOPage(appQueryRequest));
+    }
+
+    private Page<AppVO> queryGoodAppVOPage(AppQueryRequest appQueryRequest) {
+        long pageNum = appQueryRequest.getPageNum();
+        long pageSize = appQueryRequest.getPageSize();
         QueryWrapper queryWrapper = appService.getQueryWrapper(appQueryRequest);
         // 分页查询
         Page<App> appPage = appService.page(Page.of(pageNum, pageSize), queryWrapper);
@@ -162,7 +187,7 @@ public class AppController {
         Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotalRow());
         List<AppVO> appVOList = appService.getAppVOList(appPage.getRecords());
         appVOPage.setRecords(appVOList);
-        return ResultUtils.success(appVOPage);
+        return appVOPage;
     }
 
 
@@ -184,6 +209,9 @@ public class AppController {
         ThrowUtils.throwIf(oldApp == null, ErrorCode.NOT_FOUND_ERROR);
         boolean result = appService.removeById(id);
         boolean removedHistory = chatHistoryService.removeById(id);
+        if (AppConstant.GOOD_APP_PRIORITY.equals(oldApp.getPriority())) {
+            goodAppPageCache.invalidateAll();
+        }
         return ResultUtils.success(result && removedHistory);
     }
 
@@ -253,6 +281,11 @@ public class AppController {
         app.setEditTime(LocalDateTime.now());
         boolean result = appService.updateById(app);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 精选状态变化或精选应用被修改时，失效各实例的精选列表缓存
+        boolean priorityChanged = app.getPriority() != null && !Objects.equals(app.getPriority(), oldApp.getPriority());
+        if (priorityChanged || AppConstant.GOOD_APP_PRIORITY.equals(oldApp.getPriority())) {
+            goodAppPageCache.invalidateAll();
+        }
         return ResultUtils.success(true);
     }
 
@@ -297,6 +330,7 @@ public class AppController {
 
     /**
      * 应用聊天生成代码（流式 SSE）
+     * 生成在后台运行，连接断开后浏览器 EventSource 自动重连时携带 Last-Event-ID，由 {@link #resumeChatToGenCode} 续传
      *
      * @param appId   应用 ID
      * @param message 用户消息
@@ -314,16 +348,24 @@ public class AppController {
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 先记录用户消息
-        chatHistoryService.saveUserMessage(appId, loginUser.getId(), message);
-        // 调用服务生成代码（流式），并在完成时记录AI消息，失败时记录错误
-        StringBuilder aiBuffer = new StringBuilder();
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser, agent)
-                .doOnNext(aiBuffer::append)
-                .doOnError(ex -> chatHistoryService.saveErrorMessage(appId, loginUser.getId(), ex.getMessage()))
-                .doOnComplete(() -> chatHistoryService.saveAiMessage(appId, loginUser.getId(), aiBuffer.toString()));
+        // 获取生成许可（应用、用户、全局并发限制），名额不足时排队等待
+        GenerationConcurrencyLimiter.GenerationPermit permit = generationConcurrencyLimiter.acquire(loginUser.getId(), appId);
+        Flux<String> contentFlux;
+        try {
+            // 先记录用户消息
+            chatHistoryService.saveUserMessage(appId, loginUser.getId(), message);
+            // 调用服务生成代码（流式），并在完成时记录AI消息，失败时记录错误
+            StringBuilder aiBuffer = new StringBuilder();
+            contentFlux = appService.chatToGenCode(appId, message, loginUser, agent)
+                    .doOnNext(aiBuffer::append)
+                    .doOnError(ex -> chatHistoryService.saveErrorMessage(appId, loginUser.getId(), ex.getMessage()))
+                    .doOnComplete(() -> chatHistoryService.saveAiMessage(appId, loginUser.getId(), aiBuffer.toString()));
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
         // 转换为 ServerSentEvent 格式
-        return contentFlux
+        Flux<ServerSentEvent<String>> events = contentFlux
                 .map(chunk -> {
                     // 将内容包装成JSON对象
                     Map<String, String> wrapper = Map.of("d", chunk);
@@ -339,6 +381,57 @@ public class AppController {
                                 .data("")
                                 .build()
                 ));
+        // 在后台运行生成，生成结束、出错或断开超过宽限期被取消时释放许可
+        return withHeartbeat(generationRunManager.start(loginUser.getId(), appId, events, permit::release));
+    }
+
+    /**
+     * 浏览器 EventSource 断线重连（同一地址，携带 Last-Event-ID 请求头）：续传进行中（或刚结束）的生成
+     * 单独映射，重连不占用生成的限流名额，使用独立的重连限流
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 客户端最后收到的事件 id
+     * @param request     请求对象
+     * @return 从断点之后开始的生成结果流
+     */
+    @GetMapping(value = "/chat/gen/code", headers = "Last-Event-ID", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RateLimit(key = "gen_resume", limitType = RateLimitType.USER, rate = 30, rateInterval = 60, message = "重连过于频繁，请稍后再试")
+    public Flux<ServerSentEvent<String>> resumeChatToGenCode(@RequestParam Long appId,
+                                                             @RequestHeader("Last-Event-ID") String lastEventId,
+                                                             HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        ThrowUtils.throwIf(StrUtil.isBlank(lastEventId), ErrorCode.PARAMS_ERROR, "事件 id 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return withHeartbeat(generationRunManager.resume(loginUser.getId(), appId, lastEventId));
+    }
+
+    /**
+     * 续传生成流（用于无法自动重连的客户端，如 fetch 读取的 SSE）
+     *
+     * @param lastEventId       客户端最后收到的事件 id（参数）
+     * @param lastEventIdHeader 客户端最后收到的事件 id（请求头，优先）
+     * @param request           请求对象
+     * @return 从断点之后开始的生成结果流
+     */
+    @GetMapping(value = "/chat/gen/code/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RateLimit(key = "gen_resume", limitType = RateLimitType.USER, rate = 30, rateInterval = 60, message = "重连过于频繁，请稍后再试")
+    public Flux<ServerSentEvent<String>> resumeGenCode(@RequestParam(required = false) String lastEventId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                                       HttpServletRequest request) {
+        String eventId = StrUtil.isNotBlank(lastEventIdHeader) ? lastEventIdHeader : lastEventId;
+        ThrowUtils.throwIf(StrUtil.isBlank(eventId), ErrorCode.PARAMS_ERROR, "事件 id 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return withHeartbeat(generationRunManager.resume(loginUser.getId(), null, eventId));
+    }
+
+    /**
+     * 每秒发送一次心跳注释：模型长时间无输出（工具调用、构建）时也能尽快发现客户端断开
+     */
+    private Flux<ServerSentEvent<String>> withHeartbeat(Flux<ServerSentEvent<String>> events) {
+        return events.publish(shared -> Flux.merge(shared,
+                Flux.interval(HEARTBEAT_INTERVAL)
+                        .map(i -> ServerSentEvent.<String>builder().comment("ping").build())
+                        .takeUntilOther(shared.then())));
     }
 
     /**
@@ -393,7 +486,7 @@ public class AppController {
         // 6. 生成下载文件名（不建议添加中文内容）
         String downloadFileName = String.valueOf(appId);
         // 7. 调用通用下载服务
-        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, response);
+        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, request, response);
     }
 
     
@@ -12,6 +12,7 @@ import com.example.codemother.model.dto.chat.ChatHistoryQueryRequest;
 import com.example.codemother.model.entity.App;
 import com.example.codemother.model.entity.User;
 import com.example.codemother.model.vo.ChatHistoryVO;
+import com.example.codemother.model.vo.CursorPageVO;
 import com.example.codemother.service.AppService;
 import com.example.codemother.service.ChatHistoryService;
 import com.example.codemother.service.UserService;
@@ -80,24 +81,47 @@ public class ChatHistoryController {
         return ResultUtils.success(page);
     }
 
-        /**
-     * 分页查询某个应用的对话历史（游标查询）
+    /**
+     * 分页查询某个应用的对话历史（游标查询，不查询总数）
+     * 首次请求不传游标，之后传入上一页返回的 nextCursor；旧版的 lastCreateTime 仍可使用。
      *
      * @param appId          应用ID
      * @param pageSize       页面大小
-     * @param lastCreateTime 最后一条记录的创建时间
+     * @param cursor         上一页返回的游标
+     * @param lastCreateTime 最后一条记录的创建时间（兼容旧版）
      * @param request        请求
-     * @return 对话历史分页
+     * @return 对话历史游标分页
      */
     @GetMapping("/app/{appId}")
-    public BaseResponse<Page<ChatHistoryVO>> listAppChatHistory(@PathVariable Long appId,
-                                                                  @RequestParam(defaultValue = "10") int pageSize,
-                                                                  @RequestParam(required = false) LocalDateTime lastCreateTime,
-                                                                  HttpServletRequest request) {
+    public BaseResponse<CursorPageVO<ChatHistoryVO>> listAppChatHistory(@PathVariable Long appId,
+                                                                        @RequestParam(defaultValue = "10") int pageSize,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(required = false) LocalDateTime lastCreateTime,
+                                                                        HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         User loginUser = userService.getLoginUser(request);
-        // 改用功能相同、名称统一的 listByAppIdPage
-        long pageNum = 1;                       // 游标模式默认取第一页
-        Page<ChatHistoryVO> result = chatHistoryService.listByAppIdPage(appId, pageNum, pageSize);
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR);
+        // 权限：仅创建者或管理员
+        if (!app.getUserId().equals(loginUser.getId()) && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR);
+        }
+        CursorPageVO<ChatHistoryVO> result = chatHistoryService.listByAppIdCursor(appId, cursor, lastCreateTime, pageSize);
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 管理员游标分页查看所有应用的对话历史（按时间降序，不查询总数）
+     *
+     * @param chatHistoryQueryRequest 查询请求（使用 cursor 和 pageSize）
+     * @return 对话历史游标分页
+     */
+    @PostMapping("/admin/list/cursor")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<CursorPageVO<ChatHistoryVO>> adminListByCursor(@RequestBody ChatHistoryQueryRequest chatHistoryQueryRequest) {
+        ThrowUtils.throwIf(chatHistoryQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        CursorPageVO<ChatHistoryVO> result = chatHistoryService.adminListCursor(chatHistoryQueryRequest.getCursor(),
+                chatHistoryQueryRequest.getPageSize());
         return ResultUtils.success(result);
     }
 
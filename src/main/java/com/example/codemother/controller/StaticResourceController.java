@@ -1,9 +1,53 @@
 package com.example.codemother.controller;
 
 import com.example.codemother.constant.AppConstant;
+import com.example.codemother.core.hosting.StaticSiteHost;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 静态资源访问
+ */
+@RestController
+@RequestMapping("/deploy")
 public class StaticResourceController {
     // 应用生成根目录（用于浏览）
     private static final String PREVIEW_ROOT_DIR = AppConstant.CODE_OUTPUT_ROOT_DIR;
 
+    @Autowired
+    private StaticSiteHost staticSiteHost;
+
+    /**
+     * 访问部署站点根路径时补全末尾斜杠，保证页面中的相对路径正确解析
+     */
+    @RequestMapping(value = "/{deployKey}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void redirectToSiteRoot(@PathVariable String deployKey, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        response.sendRedirect(request.getRequestURI() + "/");
+    }
+
+    /**
+     * 访问已部署应用的静态资源
+     *
+     * @param deployKey 部署标识
+     */
+    @RequestMapping(value = "/{deployKey}/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveDeployedSite(@PathVariable String deployKey, HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        String prefix = request.getContextPath() + "/deploy/" + deployKey + "/";
+        String requestUri = request.getRequestURI();
+        String relativePath = requestUri.length() > prefix.length()
+                ? UriUtils.decode(requestUri.substring(prefix.length()), StandardCharsets.UTF_8)
+                : "";
+        staticSiteHost.serve(deployKey, relativePath, request, response);
+    }
 }
@@ -4,7 +4,13 @@ import cn.hutool.json.JSONUtil;
 import com.example.codemother.ai.AiCodeGeneratorService;
 import com.example.codemother.ai.AiCodeGeneratorServiceFactory;
 import com.example.codemother.ai.model.*;
+import com.example.codemother.constant.AppConstant;
+import com.example.codemother.core.builder.BuildPriority;
+import com.example.codemother.core.builder.VueBuildScheduler;
+import com.example.codemother.core.cancel.CancellationToken;
+import com.example.codemother.core.parser.CodeBlockListener;
 import com.example.codemother.core.parser.CodeParserExecutor;
+import com.example.codemother.core.parser.StreamingCodeParser;
 import com.example.codemother.core.saver.CodeFileSaverExecutor;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
@@ -14,13 +20,14 @@ import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
-
-import com.example.codemother.core.builder.VueProjectBuilder;
-import com.example.codemother.constant.AppConstant;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -34,7 +41,13 @@ public class AiCodeGeneratorFacade {
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
     @Autowired
-    private VueProjectBuilder vueProjectBuilder;
+    private VueBuildScheduler vueBuildScheduler;
+
+    /**
+     * 是否启用流式保存（默认开启）
+     */
+    @Value("${code-saver.streaming:true}")
+    private boolean streamingSaveEnabled;
 
 
     /**
@@ -51,11 +64,11 @@ public class AiCodeGeneratorFacade {
         }
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(userMessage);
+                HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML, appId);
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+                MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE, appId);
             }
             default -> {
@@ -77,12 +90,12 @@ public class AiCodeGeneratorFacade {
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage);
+                yield processCodeStream(bindCancellation(codeStream), CodeGenTypeEnum.HTML, appId);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage);
+                yield processCodeStream(bindCancellation(codeStream), CodeGenTypeEnum.MULTI_FILE, appId);
             }
             case VUE_PROJECT -> {
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectTokenStream(appId, userMessage);
@@ -105,25 +118,61 @@ public class AiCodeGeneratorFacade {
      * @return 流式响应
      */
     private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-        StringBuilder codeBuilder = new StringBuilder();
-        return codeStream.doOnNext(chunk -> {
-            // 实时收集代码片段
-            codeBuilder.append(chunk);
-        }).doOnComplete(() -> {
-            // 流式返回完成后保存代码
-            try {
-                String completeCode = codeBuilder.toString();
-                // 使用执行器解析代码
-                Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                // 使用执行器保存代码
-                File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-                log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
-            } catch (Exception e) {
-                log.error("保存失败: {}", e.getMessage());
-            }
+        // 增量解析：代码块闭合即保存对应文件，无需在流结束后整体缓存并正则扫描
+        CodeBlockListener blockListener = streamingSaveEnabled
+                // 流式保存：边生成边写入临时文件，代码块完成后原子重命名
+                ? CodeFileSaverExecutor.createStreamingSaver(codeGenType, appId)
+                : (language, code) -> saveCodeBlock(language, code, codeGenType, appId);
+        StreamingCodeParser streamingParser = CodeParserExecutor.createStreamingParser(codeGenType, blockListener);
+        return codeStream.doOnNext(streamingParser::append)
+                // 出错或取消时清理未完成的临时文件
+                .doOnError(error -> streamingParser.abort())
+                .doOnCancel(streamingParser::abort)
+                .doOnComplete(() -> {
+                    // 流式返回完成后收尾保存
+                    try {
+                        Object parsedResult = streamingParser.finish();
+                        if (streamingParser.hasCompletedBlocks()) {
+                            log.info("流式保存完成，appId: {}", appId);
+                            return;
+                        }
+                        // 未解析出任何代码块（如 HTML 兜底为整段内容），使用执行器整体保存
+                        File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
+                        log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
+                    } catch (Exception e) {
+                        log.error("保存失败: {}", e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 在绑定取消令牌的线程上订阅模型流（模型请求在订阅时发起），下游取消时令牌随之取消，模型 HTTP 响应流被关闭
+     */
+    private Flux<String> bindCancellation(Flux<String> codeStream) {
+        return Flux.create(sink -> {
+            CancellationToken cancellation = new CancellationToken();
+            Disposable.Swap subscription = Disposables.swap();
+            sink.onCancel(() -> {
+                cancellation.cancel();
+                subscription.dispose();
+            });
+            CancellationToken.runWith(cancellation,
+                    () -> subscription.update(codeStream.subscribe(sink::next, sink::error, sink::complete)));
         });
     }
 
+    /**
+     * 保存流式解析出的单个代码块，失败只记录日志，不中断流
+     */
+    private void saveCodeBlock(String language, String code, CodeGenTypeEnum codeGenType, Long appId) {
+        try {
+            File savedDir = CodeFileSaverExecutor.executeBlockSaver(language, code, codeGenType, appId);
+            log.info("代码块 {} 保存成功，路径为：{}", language, savedDir.getAbsolutePath());
+        } catch (Exception e) {
+            log.error("代码块 {} 保存失败: {}", language, e.getMessage());
+        }
+    }
+
     /**
      * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
      *
@@ -132,6 +181,9 @@ public class AiCodeGeneratorFacade {
      */
     private Flux<String> processTokenStream(TokenStream tokenStream, Long appId) {
         return Flux.create(sink -> {
+            // 生成被取消（下游取消订阅）时：关闭模型响应流、停止工具调用循环、取消尚未完成的构建
+            CancellationToken cancellation = new CancellationToken();
+            sink.onCancel(cancellation::cancel);
             tokenStream.onPartialResponse((String partialResponse) -> {
                         AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
                         sink.next(JSONUtil.toJsonStr(aiResponseMessage));
@@ -141,24 +193,43 @@ public class AiCodeGeneratorFacade {
                         sink.next(JSONUtil.toJsonStr(toolRequestMessage));
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
+                        // 已取消时抛出，跳过同一轮剩余的工具调用，也不再发起下一轮模型请求
+                        cancellation.throwIfCancelled();
                         ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
                         sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
                     })
                     .onCompleteResponse((ChatResponse response) -> {
-                        // 同步构建 Vue 项目，确保在外层完成事件前项目已就绪
+                        if (cancellation.isCancelled()) {
+                            return;
+                        }
+                        // 提交到构建调度器，构建完成后再结束流，确保在外层完成事件前项目已就绪
                         String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId;
-                        boolean buildOk = vueProjectBuilder.buildProject(projectPath);
-                        if (!buildOk) {
-                            sink.error(new RuntimeException("Vue 项目构建失败: " + projectPath));
-                        } else {
-                            sink.complete();
+                        try {
+                            CompletableFuture<Boolean> buildFuture = vueBuildScheduler.submit(appId, projectPath, BuildPriority.REGENERATE);
+                            cancellation.onCancel(() -> vueBuildScheduler.cancel(appId, buildFuture));
+                            buildFuture.whenComplete((buildOk, error) -> {
+                                if (error != null) {
+                                    sink.error(error);
+                                } else if (!buildOk) {
+                                    sink.error(new RuntimeException("Vue 项目构建失败: " + projectPath));
+                                } else {
+                                    sink.complete();
+                                }
+                            });
+                        } catch (Exception e) {
+                            sink.error(e);
                         }
                     })
                     .onError((Throwable error) -> {
+                        if (cancellation.isCancelled()) {
+                            log.info("代码生成已取消，appId: {}", appId);
+                            return;
+                        }
                         error.printStackTrace();
                         sink.error(error);
-                    })
-                    .start();
+                    });
+            // 首轮模型请求在当前线程发起，绑定令牌后由可取消的 HTTP 客户端感知
+            CancellationToken.runWith(cancellation, tokenStream::start);
         });
     }
 
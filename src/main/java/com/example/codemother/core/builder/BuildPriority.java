@@ -0,0 +1,24 @@
+package com.example.codemother.core.builder;
+
+import lombok.Getter;
+
+/**
+ * 构建任务优先级（数值越小越优先）
+ *
+ * @author kkoma
+ */
+@Getter
+public enum BuildPriority {
+
+    DEPLOY("部署", 0),
+    REGENERATE("生成", 1);
+
+    private final String text;
+
+    private final int order;
+
+    BuildPriority(String text, int order) {
+        this.text = text;
+        this.order = order;
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.codemother.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.codemother.constant.AppConstant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 共享依赖存储
+ * 以 package.json 与 lockfile 的内容哈希为键，每个键存放一份完整安装好的 node_modules，
+ * 依赖相同的项目直接链接（优先软链接，不支持时逐文件硬链接）到存储目录，命中时无需 npm install，可离线构建。
+ * 存储条目通过临时目录 + 原子重命名发布，只要条目存在即视为安装完整。
+ * 条目的修改时间记录最近一次链接或发布的时间；后台定期清理：没有项目软链接引用的条目，空闲超过期限或超出条目数上限（按最近使用保留）时删除。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class NodeModulesStore {
+
+    private static final String NODE_MODULES = "node_modules";
+
+    private static final String PACKAGE_JSON = "package.json";
+
+    private static final String PACKAGE_LOCK = "package-lock.json";
+
+    /**
+     * 链接标记文件，写在存储条目的 node_modules 内，用于识别项目中的 node_modules 来自存储
+     */
+    private static final String STORE_MARKER = ".store-key";
+
+    /**
+     * 待删除条目的目录名前缀（先重命名再删除，删除中途失败也不会留下看似完整的条目）
+     */
+    private static final String TRASH_PREFIX = ".trash.";
+
+    /**
+     * 保留的条目数上限（正在被项目引用的条目不会删除）
+     */
+    @Value("${vue-builder.node-modules-store.max-entries:50}")
+    private int maxEntries;
+
+    /**
+     * 条目空闲（未被链接或发布）超过该天数后删除
+     */
+    @Value("${vue-builder.node-modules-store.max-idle-days:7}")
+    private long maxIdleDays;
+
+    /**
+     * 清理间隔（分钟）
+     */
+    @Value("${vue-builder.node-modules-store.sweep-interval-minutes:60}")
+    private long sweepIntervalMinutes;
+
+    /**
+     * 按依赖键加锁，避免同一键的并发发布，以及清理与链接、发布并发
+     */
+    private final ConcurrentHashMap<String, ReentrantLock> keyLocks = new ConcurrentHashMap<>();
+
+    private Thread sweeper;
+
+    @PostConstruct
+    public void init() {
+        sweeper = Thread.ofVirtual().name("node-modules-store-sweeper").start(this::sweepLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.interrupt();
+    }
+
+    /**
+     * 计算项目依赖键（package.json + package-lock.json 内容的 SHA-256）
+     *
+     * @param projectDir 项目目录
+     * @return 依赖键，package.json 不存在时返回 null
+     */
+    public String computeKey(File projectDir) {
+        File packageJson = new File(projectDir, PACKAGE_JSON);
+        if (!packageJson.isFile()) {
+            return null;
+        }
+        byte[] content = FileUtil.readBytes(packageJson);
+        File packageLock = new File(projectDir, PACKAGE_LOCK);
+        if (packageLock.isFile()) {
+            // 以 0 字节分隔两个文件，避免内容拼接产生歧义
+            content = ArrayUtil.addAll(content, new byte[]{0}, FileUtil.readBytes(packageLock));
+        }
+        return DigestUtil.sha256Hex(content);
+    }
+
+    /**
+     * 尝试从存储中链接 node_modules
+     *
+     * @param projectDir 项目目录
+     * @param key        依赖键
+     * @return 是否命中（命中时项目已可直接构建）
+     */
+    public boolean linkIfPresent(File projectDir, String key) {
+        ReentrantLock lock = keyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            return doLinkIfPresent(projectDir, key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean doLinkIfPresent(File projectDir, String key) {
+        Path storeModules = getStoreModulesPath(key);
+        if (!Files.isDirectory(storeModules)) {
+            return false;
+        }
+        touchEntry(key);
+        Path projectModules = projectDir.toPath().resolve(NODE_MODULES);
+        String linkedKey = readMarker(projectModules);
+        if (linkedKey != null && linkedKey.equals(readMarker(storeModules))) {
+            log.info("node_modules 已链接到共享依赖，key: {}", key);
+            return true;
+        }
+        try {
+            deleteModules(projectModules);
+            link(storeModules, projectModules);
+            // 锁文件一并恢复，保证与存储条目的依赖版本一致
+            Path storeLock = getStoreEntryPath(key).resolve(PACKAGE_LOCK);
+            Path projectLock = projectDir.toPath().resolve(PACKAGE_LOCK);
+            if (Files.isRegularFile(storeLock) && !Files.exists(projectLock)) {
+                Files.copy(storeLock, projectLock);
+            }
+            log.info("命中共享依赖，跳过 npm install，key: {}", key);
+            return true;
+        } catch (IOException e) {
+            log.warn("链接共享依赖失败，回退为 npm install: {}", e.getMessage());
+            deleteModulesQuietly(projectModules);
+            return false;
+        }
+    }
+
+    /**
+     * 安装前清理从存储链接来的 node_modules，防止 npm install 改写共享条目
+     *
+     * @param projectDir 项目目录
+     */
+    public void detach(File projectDir) {
+        Path projectModules = projectDir.toPath().resolve(NODE_MODULES);
+        if (Files.isSymbolicLink(projectModules) || readMarker(projectModules) != null) {
+            deleteModulesQuietly(projectModules);
+        }
+    }
+
+    /**
+     * 将项目中刚安装好的 node_modules 发布到存储，并替换为链接
+     *
+     * @param projectDir 项目目录
+     * @param key        安装前计算的依赖键
+     * @return 项目中的 node_modules 是否可用；发布后链接失败时返回 false，需要重新安装
+     */
+    public boolean publish(File projectDir, String key) {
+        Path projectModules = projectDir.toPath().resolve(NODE_MODULES);
+        if (!Files.isDirectory(projectModules, LinkOption.NOFOLLOW_LINKS)) {
+            return true;
+        }
+        ReentrantLock lock = keyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            Path entry = getStoreEntryPath(key);
+            Path storeModules = entry.resolve(NODE_MODULES);
+            if (Files.isDirectory(storeModules)) {
+                // 其他项目已发布同一键，保留本地安装结果即可
+                return true;
+            }
+            Files.createDirectories(entry);
+            Path projectLock = projectDir.toPath().resolve(PACKAGE_LOCK);
+            if (Files.isRegularFile(projectLock)) {
+                Files.copy(projectLock, entry.resolve(PACKAGE_LOCK), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.writeString(projectModules.resolve(STORE_MARKER), key, StandardCharsets.UTF_8);
+            // 先移动到临时目录再原子重命名，其他进程不会看到不完整的条目
+            Path staging = entry.resolve("." + NODE_MODULES + "." + IdUtil.fastSimpleUUID());
+            Files.move(projectModules, staging);
+            try {
+                Files.move(staging, storeModules, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(staging, projectModules);
+                throw e;
+            }
+            try {
+                link(storeModules, projectModules);
+            } catch (IOException e) {
+                // 条目已发布，其他项目可能已在使用，不再移回；清理残留后由调用方重新安装本地依赖
+                log.warn("发布共享依赖后链接失败，需重新安装本地依赖: {}", e.getMessage());
+                deleteModulesQuietly(projectModules);
+                return false;
+            }
+            touchEntry(key);
+            log.info("node_modules 已发布到共享依赖，key: {}", key);
+            // npm install 可能新生成或更新了 lockfile，为安装后的依赖键建立别名，下次构建同样命中
+            String installedKey = computeKey(projectDir);
+            if (!key.equals(installedKey)) {
+                createAlias(installedKey, storeModules);
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("发布共享依赖失败，项目保留本地 node_modules: {}", e.getMessage());
+            return Files.isDirectory(projectModules);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 为已发布的条目建立别名条目（软链接），已存在或不支持软链接时忽略
+     */
+    private void createAlias(String aliasKey, Path storeModules) {
+        Path aliasModules = getStoreModulesPath(aliasKey);
+        if (Files.exists(aliasModules)) {
+            return;
+        }
+        try {
+            Files.createDirectories(aliasModules.getParent());
+            Path storeLock = storeModules.getParent().resolve(PACKAGE_LOCK);
+            if (Files.isRegularFile(storeLock)) {
+                Files.copy(storeLock, aliasModules.getParent().resolve(PACKAGE_LOCK), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.createSymbolicLink(aliasModules, storeModules.toAbsolutePath());
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("创建共享依赖别名失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理循环
+     */
+    private void sweepLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(sweepIntervalMinutes));
+                sweep();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("清理共享依赖失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 清理存储：按最近使用时间从新到旧，保留被项目引用的条目以及空闲未超期且未超出数量上限的条目，其余删除；
+     * 目标已不存在的别名条目和中途失败留下的待删除目录一并删除
+     */
+    private void sweep() throws IOException {
+        Path storeDir = Paths.get(AppConstant.NODE_MODULES_STORE_DIR);
+        if (!Files.isDirectory(storeDir)) {
+            return;
+        }
+        Set<Path> referenced = collectReferencedEntries();
+        List<Path> entries = new ArrayList<>();
+        try (var stream = Files.list(storeDir)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(TRASH_PREFIX)) {
+                    FileUtil.del(path);
+                } else if (!name.startsWith(".") && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    entries.add(path);
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(this::lastUsedMillis).reversed());
+        long idleCutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxIdleDays);
+        int kept = 0;
+        int removed = 0;
+        for (Path entry : entries) {
+            long lastUsed = lastUsedMillis(entry);
+            Path modules = entry.resolve(NODE_MODULES);
+            // 别名条目的目标已被删除
+            boolean broken = Files.isSymbolicLink(modules) && !Files.exists(modules);
+            boolean inUse = !broken && referenced.contains(realPath(entry));
+            if (inUse || (!broken && kept < maxEntries && lastUsed >= idleCutoff)) {
+                kept++;
+                continue;
+            }
+            if (removeEntry(entry, lastUsed)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("已清理共享依赖条目 {} 个，保留 {} 个", removed, kept);
+        }
+    }
+
+    /**
+     * 项目中以软链接引用的存储条目（别名条目及其目标条目都算作引用）；硬链接的项目与存储条目互不影响，不算引用
+     */
+    private Set<Path> collectReferencedEntries() throws IOException {
+        Set<Path> referenced = new HashSet<>();
+        Path outputDir = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR);
+        if (!Files.isDirectory(outputDir)) {
+            return referenced;
+        }
+        try (var stream = Files.list(outputDir)) {
+            for (Path projectDir : (Iterable<Path>) stream::iterator) {
+                Path modules = projectDir.resolve(NODE_MODULES);
+                if (!Files.isSymbolicLink(modules)) {
+                    continue;
+                }
+                try {
+                    Path linkTarget = Files.readSymbolicLink(modules);
+                    referenced.add(realPath(linkTarget.getParent()));
+                    referenced.add(modules.toRealPath().getParent());
+                } catch (IOException e) {
+                    // 链接目标已不存在
+                }
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * 删除条目：持有依赖键锁并确认期间未被使用，先重命名再删除
+     */
+    private boolean removeEntry(Path entry, long expectedLastUsed) {
+        String key = entry.getFileName().toString();
+        ReentrantLock lock = keyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (lastUsedMillis(entry) != expectedLastUsed) {
+                return false;
+            }
+            Path trash = entry.resolveSibling(TRASH_PREFIX + key + "." + IdUtil.fastSimpleUUID());
+            Files.move(entry, trash, StandardCopyOption.ATOMIC_MOVE);
+            FileUtil.del(trash);
+            return true;
+        } catch (Exception e) {
+            log.warn("删除共享依赖条目失败: {}, 错误信息: {}", key, e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录条目的最近使用时间；别名条目同时记录其目标条目
+     */
+    private void touchEntry(String key) {
+        Path entry = getStoreEntryPath(key);
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        try {
+            Files.setLastModifiedTime(entry, now);
+            Path modules = entry.resolve(NODE_MODULES);
+            if (Files.isSymbolicLink(modules)) {
+                Files.setLastModifiedTime(modules.toRealPath().getParent(), now);
+            }
+        } catch (IOException e) {
+            log.debug("记录共享依赖使用时间失败: {}", e.getMessage());
+        }
+    }
+
+    private long lastUsedMillis(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path realPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+
+    private Path getStoreEntryPath(String key) {
+        return Paths.get(AppConstant.NODE_MODULES_STORE_DIR, key);
+    }
+
+    private Path getStoreModulesPath(String key) {
+        return getStoreEntryPath(key).resolve(NODE_MODULES);
+    }
+
+    /**
+     * 读取 node_modules 中的存储标记，不存在时返回 null
+     */
+    private String readMarker(Path modules) {
+        Path marker = modules.resolve(STORE_MARKER);
+        if (!Files.isRegularFile(marker)) {
+            return null;
+        }
+        try {
+            return Files.readString(marker, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 链接存储目录：优先软链接，不支持时（如 Windows 无权限）逐文件硬链接
+     */
+    private void link(Path storeModules, Path projectModules) throws IOException {
+        try {
+            Files.createSymbolicLink(projectModules, storeModules.toAbsolutePath());
+        } catch (UnsupportedOperationException | IOException e) {
+            log.info("不支持软链接，改为硬链接: {}", e.getMessage());
+            hardLinkTree(storeModules, projectModules);
+        }
+    }
+
+    private void hardLinkTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path dest = target.resolve(source.relativize(file).toString());
+                if (attrs.isSymbolicLink()) {
+                    // node_modules/.bin 下的脚本链接保持原有相对链接
+                    Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+                } else {
+                    Files.createLink(dest, file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 删除项目中的 node_modules：软链接只删除链接本身，不影响存储条目
+     */
+    private void deleteModules(Path modules) throws IOException {
+        if (Files.isSymbolicLink(modules)) {
+            Files.delete(modules);
+        } else if (Files.exists(modules)) {
+            FileUtil.del(modules);
+        }
+    }
+
+    private void deleteModulesQuietly(Path modules) {
+        try {
+            deleteModules(modules);
+        } catch (Exception e) {
+            log.warn("删除 node_modules 失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.codemother.core.builder;
+
+import com.example.codemother.core.cancel.CancellationToken;
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vue 项目构建调度器
+ * 固定数量的工作线程从有界优先队列中取任务执行，部署构建优先于生成构建；
+ * 同一应用排队中的构建会合并为一次，同一应用同一时刻最多只有一个构建在执行。
+ * 生成触发的构建可随生成一起取消：排队中的直接移除，执行中的终止 npm 进程；已合并部署请求的构建不会被取消。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class VueBuildScheduler {
+
+    @Autowired
+    private VueProjectBuilder vueProjectBuilder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 并发构建数（同时运行的 npm 进程数）
+     */
+    @Value("${vue-builder.scheduler.workers:2}")
+    private int workers;
+
+    /**
+     * 排队任务上限，超出时拒绝新的构建
+     */
+    @Value("${vue-builder.scheduler.queue-capacity:50}")
+    private int queueCapacity;
+
+    private final PriorityBlockingQueue<BuildTask> queue = new PriorityBlockingQueue<>();
+
+    /**
+     * 尚未开始执行的任务（appId -> 任务），用于合并同一应用的构建请求
+     */
+    private final Map<Long, BuildTask> pendingTasks = new HashMap<>();
+
+    /**
+     * 所属应用正在构建、需等待其完成的任务
+     */
+    private final Map<Long, BuildTask> deferredTasks = new HashMap<>();
+
+    /**
+     * 正在构建的任务（appId -> 任务）
+     */
+    private final Map<Long, BuildTask> runningTasks = new HashMap<>();
+
+    private final AtomicInteger activeBuilds = new AtomicInteger();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final List<Thread> workerThreads = new ArrayList<>();
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("vue.build.queue.depth", this, VueBuildScheduler::getQueueDepth)
+                .description("排队中的 Vue 构建任务数")
+                .register(meterRegistry);
+        Gauge.builder("vue.build.active", activeBuilds, AtomicInteger::get)
+                .description("执行中的 Vue 构建任务数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("vue.build.rejected")
+                .description("因队列已满被拒绝的 Vue 构建任务数")
+                .register(meterRegistry);
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(Thread.ofVirtual().name("vue-build-worker-" + i).start(this::runWorker));
+        }
+        log.info("Vue 构建调度器已启动，并发数: {}，队列容量: {}", workers, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerThreads.forEach(Thread::interrupt);
+        synchronized (this) {
+            pendingTasks.values().forEach(task ->
+                    task.future.completeExceptionally(new BusinessException(ErrorCode.SYSTEM_ERROR, "服务关闭，构建已取消")));
+            pendingTasks.clear();
+            deferredTasks.clear();
+            queue.clear();
+        }
+    }
+
+    /**
+     * 提交构建任务，同一应用已有排队中的任务时直接复用
+     *
+     * @param appId       应用 ID
+     * @param projectPath 项目根目录路径
+     * @param priority    优先级
+     * @return 构建结果（是否构建成功）
+     */
+    public CompletableFuture<Boolean> submit(Long appId, String projectPath, BuildPriority priority) {
+        synchronized (this) {
+            BuildTask pending = pendingTasks.get(appId);
+            if (pending != null) {
+                // 排队中的任务尚未读取项目文件，合并后构建的是最新代码；必要时提升优先级
+                if (priority.getOrder() < pending.priority.getOrder()) {
+                    boolean queued = queue.remove(pending);
+                    pending.priority = priority;
+                    if (queued) {
+                        queue.offer(pending);
+                    }
+                }
+                log.info("应用 {} 已有排队中的构建任务，合并本次请求", appId);
+                return pending.future;
+            }
+            if (getQueueDepth() >= queueCapacity) {
+                rejectedCounter.increment();
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "构建任务繁忙，请稍后再试");
+            }
+            BuildTask task = new BuildTask(appId, projectPath, priority, sequence.incrementAndGet());
+            pendingTasks.put(appId, task);
+            if (runningTasks.containsKey(appId)) {
+                deferredTasks.put(appId, task);
+            } else {
+                queue.offer(task);
+            }
+            log.info("提交 Vue 构建任务，appId: {}，优先级: {}，排队数: {}", appId, priority.getText(), getQueueDepth());
+            return task.future;
+        }
+    }
+
+    /**
+     * 取消生成触发的构建（任务已被部署请求合并时不取消）
+     *
+     * @param appId  应用 ID
+     * @param future 提交时返回的构建结果
+     * @return 是否已取消
+     */
+    public boolean cancel(Long appId, CompletableFuture<Boolean> future) {
+        synchronized (this) {
+            BuildTask pending = pendingTasks.get(appId);
+            if (pending != null && pending.future == future) {
+                if (pending.priority != BuildPriority.REGENERATE) {
+                    return false;
+                }
+                pendingTasks.remove(appId);
+                queue.remove(pending);
+                deferredTasks.remove(appId, pending);
+                future.completeExceptionally(new CancellationException("构建已取消"));
+                log.info("已取消排队中的构建任务，appId: {}", appId);
+                return true;
+            }
+            BuildTask running = runningTasks.get(appId);
+            if (running == null || running.future != future || running.priority != BuildPriority.REGENERATE) {
+                return false;
+            }
+            log.info("终止执行中的构建任务，appId: {}", appId);
+            running.cancellation.cancel();
+            return true;
+        }
+    }
+
+    /**
+     * 排队中的任务数（含等待同应用构建完成的任务）
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size() + deferredTasks.size();
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            BuildTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (this) {
+                // 取出后、加锁前任务可能已被取消（已移出 pendingTasks 且结果已完成），直接跳过
+                if (pendingTasks.get(task.appId) != task || task.future.isDone()) {
+                    continue;
+                }
+                if (runningTasks.containsKey(task.appId)) {
+                    deferredTasks.put(task.appId, task);
+                    continue;
+                }
+                pendingTasks.remove(task.appId);
+                runningTasks.put(task.appId, task);
+            }
+            try {
+                execute(task);
+            } finally {
+                synchronized (this) {
+                    runningTasks.remove(task.appId);
+                    BuildTask next = deferredTasks.remove(task.appId);
+                    if (next != null) {
+                        queue.offer(next);
+                    }
+                }
+            }
+        }
+    }
+
+    private void execute(BuildTask task) {
+        long waitNanos = System.nanoTime() - task.submitNanos;
+        Timer.builder("vue.build.wait")
+                .description("Vue 构建任务排队耗时")
+                .tag("priority", task.priority.name())
+                .register(meterRegistry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+        activeBuilds.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean success = false;
+        try {
+            success = vueProjectBuilder.buildProject(task.projectPath, task.cancellation);
+        } catch (Exception e) {
+            log.error("构建 Vue 项目时发生异常，appId: {}，错误信息: {}", task.appId, e.getMessage(), e);
+        } finally {
+            activeBuilds.decrementAndGet();
+            sample.stop(Timer.builder("vue.build.duration")
+                    .description("Vue 构建耗时")
+                    .tag("priority", task.priority.name())
+                    .tag("result", success ? "success" : "failure")
+                    .register(meterRegistry));
+            if (task.cancellation.isCancelled()) {
+                task.future.completeExceptionally(new CancellationException("构建已取消"));
+            } else {
+                task.future.complete(success);
+            }
+        }
+    }
+
+    /**
+     * 构建任务：按优先级排序，同优先级先进先出
+     */
+    private static class BuildTask implements Comparable<BuildTask> {
+
+        private final Long appId;
+
+        private final String projectPath;
+
+        private final long sequence;
+
+        private final long submitNanos = System.nanoTime();
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private final CancellationToken cancellation = new CancellationToken();
+
+        private volatile BuildPriority priority;
+
+        private BuildTask(Long appId, String projectPath, BuildPriority priority, long sequence) {
+            this.appId = appId;
+            this.projectPath = projectPath;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(BuildTask other) {
+            int result = Integer.compare(priority.getOrder(), other.priority.getOrder());
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,10 +1,27 @@
 package com.example.codemother.core.builder;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RuntimeUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.codemother.core.cancel.CancellationToken;
+import com.example.codemother.utils.ProjectArchiveCache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -12,20 +29,29 @@ import java.util.concurrent.TimeUnit;
 public class VueProjectBuilder {
 
     /**
-     * 异步构建项目（不阻塞主流程）
-     *
-     * @param projectPath 项目路径
+     * 构建清单文件名：记录上次成功构建时的源文件哈希，与 dist 同在项目根目录
      */
-    public void buildProjectAsync(String projectPath) {
-        // 在单独的线程中执行构建，避免阻塞主流程
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis()).start(() -> {
-            try {
-                buildProject(projectPath);
-            } catch (Exception e) {
-                log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
-            }
-        });
-    }
+    public static final String BUILD_MANIFEST_NAME = ".build-manifest.json";
+
+    /**
+     * 计算源文件哈希时跳过的目录
+     */
+    private static final Set<String> MANIFEST_IGNORED_DIRS = Set.of("node_modules", "dist", ".git");
+
+    /**
+     * 是否启用增量构建（源文件未变化时跳过构建，默认开启）
+     */
+    @Value("${vue-builder.incremental.enabled:true}")
+    private boolean incrementalBuildEnabled;
+
+    @Autowired
+    private NodeModulesStore nodeModulesStore;
+
+    /**
+     * 是否启用共享依赖存储（默认开启）
+     */
+    @Value("${vue-builder.node-modules-store.enabled:true}")
+    private boolean nodeModulesStoreEnabled;
 
     /**
      * 执行命令
@@ -33,21 +59,36 @@ public class VueProjectBuilder {
      * @param workingDir     工作目录
      * @param command        命令字符串
      * @param timeoutSeconds 超时时间（秒）
+     * @param cancellation   取消令牌，取消时终止进程（可为 null）
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    private boolean executeCommand(File workingDir, String command, int timeoutSeconds, CancellationToken cancellation) {
+        if (cancellation != null && cancellation.isCancelled()) {
+            return false;
+        }
+        Process process = null;
+        Runnable unregister = () -> {
+        };
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
-            Process process = RuntimeUtil.exec(
+            process = RuntimeUtil.exec(
                     null,
                     workingDir,
                     command.split("\\s+") // 命令分割为数组
             );
+            if (cancellation != null) {
+                Process started = process;
+                unregister = cancellation.onCancel(() -> destroyProcessTree(started));
+            }
             // 等待进程完成，设置超时
             boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
             if (!finished) {
                 log.error("命令执行超时（{}秒），强制终止进程", timeoutSeconds);
-                process.destroyForcibly();
+                destroyProcessTree(process);
+                return false;
+            }
+            if (cancellation != null && cancellation.isCancelled()) {
+                log.info("构建已取消，命令被终止: {}", command);
                 return false;
             }
             int exitCode = process.exitValue();
@@ -58,28 +99,73 @@ public class VueProjectBuilder {
                 log.error("命令执行失败，退出码: {}", exitCode);
                 return false;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待命令时线程被中断，终止进程: {}", command);
+            destroyProcessTree(process);
+            return false;
         } catch (Exception e) {
             log.error("执行命令失败: {}, 错误信息: {}", command, e.getMessage());
             return false;
+        } finally {
+            unregister.run();
+        }
+    }
+
+    /**
+     * 强制终止进程及其子进程（npm 会再派生 node / esbuild 等进程）
+     */
+    private void destroyProcessTree(Process process) {
+        if (process == null) {
+            return;
         }
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
     }
 
     /**
      * 执行 npm install 命令
      */
-    private boolean executeNpmInstall(File projectDir) {
+    private boolean executeNpmInstall(File projectDir, CancellationToken cancellation) {
         log.info("执行 npm install...");
-        String command = String.format("%s install", buildCommand("npm"));
-        return executeCommand(projectDir, command, 300); // 5分钟超时
+        // 优先使用 npm 本地缓存，减少网络请求
+        String command = String.format("%s install --prefer-offline --no-audit --no-fund", buildCommand("npm"));
+        return executeCommand(projectDir, command, 300, cancellation); // 5分钟超时
+    }
+
+    /**
+     * 安装依赖：依赖键命中共享存储时直接链接，否则执行 npm install 并发布到存储
+     */
+    private boolean installDependencies(File projectDir, CancellationToken cancellation) {
+        if (!nodeModulesStoreEnabled) {
+            return executeNpmInstall(projectDir, cancellation);
+        }
+        String key = nodeModulesStore.computeKey(projectDir);
+        if (key == null) {
+            return executeNpmInstall(projectDir, cancellation);
+        }
+        if (nodeModulesStore.linkIfPresent(projectDir, key)) {
+            return true;
+        }
+        // 未命中：先解除旧的共享链接，避免 npm install 改写其他项目共用的依赖
+        nodeModulesStore.detach(projectDir);
+        if (!executeNpmInstall(projectDir, cancellation)) {
+            return false;
+        }
+        if (!nodeModulesStore.publish(projectDir, key)) {
+            // 已发布到存储但链接失败，项目中没有依赖，回退为本地安装
+            return executeNpmInstall(projectDir, cancellation);
+        }
+        return true;
     }
 
     /**
      * 执行 npm run build 命令
      */
-    private boolean executeNpmBuild(File projectDir) {
+    private boolean executeNpmBuild(File projectDir, CancellationToken cancellation) {
         log.info("执行 npm run build...");
         String command = String.format("%s run build", buildCommand("npm"));
-        return executeCommand(projectDir, command, 180); // 3分钟超时
+        return executeCommand(projectDir, command, 180, cancellation); // 3分钟超时
     }
 
 
@@ -103,6 +189,17 @@ public class VueProjectBuilder {
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, CancellationToken.current());
+    }
+
+    /**
+     * 构建 Vue 项目（可取消）
+     *
+     * @param projectPath  项目根目录路径
+     * @param cancellation 取消令牌，取消时终止 npm 进程（可为 null）
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, CancellationToken cancellation) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
@@ -114,25 +211,94 @@ public class VueProjectBuilder {
             log.error("package.json 文件不存在: {}", packageJson.getAbsolutePath());
             return false;
         }
+        File distDir = new File(projectDir, "dist");
+        File manifestFile = new File(projectDir, BUILD_MANIFEST_NAME);
+        if (incrementalBuildEnabled && distDir.isDirectory() && isManifestUpToDate(projectDir, manifestFile)) {
+            log.info("源文件自上次构建后未变化，跳过构建: {}", projectPath);
+            return true;
+        }
         log.info("开始构建 Vue 项目: {}", projectPath);
-        // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
+        // 构建前删除旧清单，构建失败时不会误判为已构建
+        FileUtil.del(manifestFile);
+        // 安装依赖（优先复用共享依赖）
+        if (!installDependencies(projectDir, cancellation)) {
             log.error("npm install 执行失败");
             return false;
         }
+        // npm install 可能更新 lockfile，失效下载压缩包缓存
+        ProjectArchiveCache.invalidate(projectDir.toPath());
+        // 在安装依赖之后计算清单，npm install 生成的 lockfile 也计入，下次比较时保持一致
+        Map<String, String> manifest = incrementalBuildEnabled ? computeSourceManifest(projectDir) : null;
         // 执行 npm run build
-        if (!executeNpmBuild(projectDir)) {
+        if (!executeNpmBuild(projectDir, cancellation)) {
             log.error("npm run build 执行失败");
             return false;
         }
         // 验证 dist 目录是否生成
-        File distDir = new File(projectDir, "dist");
         if (!distDir.exists()) {
             log.error("构建完成但 dist 目录未生成: {}", distDir.getAbsolutePath());
             return false;
         }
+        if (manifest != null) {
+            FileUtil.writeUtf8String(JSONUtil.toJsonStr(manifest), manifestFile);
+        }
         log.info("Vue 项目构建成功，dist 目录: {}", distDir.getAbsolutePath());
         return true;
     }
 
+    /**
+     * 判断当前源文件是否与上次成功构建的清单一致
+     */
+    private boolean isManifestUpToDate(File projectDir, File manifestFile) {
+        if (!manifestFile.isFile()) {
+            return false;
+        }
+        try {
+            JSONObject saved = JSONUtil.parseObj(FileUtil.readUtf8String(manifestFile));
+            Map<String, String> current = computeSourceManifest(projectDir);
+            if (current == null || saved.size() != current.size()) {
+                return false;
+            }
+            return current.entrySet().stream()
+                    .allMatch(entry -> entry.getValue().equals(saved.getStr(entry.getKey())));
+        } catch (Exception e) {
+            log.warn("读取构建清单失败，将重新构建: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 计算源文件清单（相对路径 -> SHA-256），跳过 node_modules、dist 等目录
+     *
+     * @return 清单，读取失败时返回 null
+     */
+    private Map<String, String> computeSourceManifest(File projectDir) {
+        Path root = projectDir.toPath();
+        Map<String, String> manifest = new TreeMap<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && MANIFEST_IGNORED_DIRS.contains(dir.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String relativePath = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    if (attrs.isRegularFile() && !BUILD_MANIFEST_NAME.equals(relativePath)) {
+                        manifest.put(relativePath, DigestUtil.sha256Hex(file.toFile()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("计算源文件清单失败: {}", e.getMessage());
+            return null;
+        }
+        return manifest;
+    }
+
 }
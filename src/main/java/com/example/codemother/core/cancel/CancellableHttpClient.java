@@ -0,0 +1,166 @@
+package com.example.codemother.core.cancel;
+
+import cn.hutool.core.io.IoUtil;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 可取消的模型 HTTP 客户端
+ * 包装 langchain4j 默认的 HTTP 客户端：发起流式请求时读取当前线程绑定的 {@link CancellationToken}，
+ * 令牌取消时关闭响应流，断开与模型服务的连接，并以取消异常结束监听器；回调执行期间在回调线程上重新绑定令牌，
+ * 工具调用后由回调线程发起的下一轮请求同样可以被取消。
+ *
+ * @author kkoma
+ */
+public class CancellableHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    private CancellableHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        CancellationToken token = CancellationToken.current();
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        CancellationToken token = CancellationToken.current();
+        if (token == null) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+        if (token.isCancelled()) {
+            listener.onError(new CancellationException("生成已取消"));
+            return;
+        }
+        delegate.execute(request, new CancellableParser(parser, token), new CancellableListener(listener, token));
+    }
+
+    /**
+     * 解析响应流期间注册取消回调，取消时关闭输入流使解析立即结束
+     */
+    private record CancellableParser(ServerSentEventParser delegate, CancellationToken token)
+            implements ServerSentEventParser {
+
+        @Override
+        public void parse(InputStream httpResponseBody, ServerSentEventListener listener) {
+            Runnable unregister = token.onCancel(() -> IoUtil.close(httpResponseBody));
+            try {
+                delegate.parse(httpResponseBody, listener);
+            } finally {
+                unregister.run();
+            }
+        }
+    }
+
+    /**
+     * 取消后不再向模型处理器转发事件，只通知一次取消异常
+     */
+    private static class CancellableListener implements ServerSentEventListener {
+
+        private final ServerSentEventListener delegate;
+
+        private final CancellationToken token;
+
+        private final AtomicBoolean terminated = new AtomicBoolean();
+
+        private CancellableListener(ServerSentEventListener delegate, CancellationToken token) {
+            this.delegate = delegate;
+            this.token = token;
+        }
+
+        @Override
+        public void onOpen(SuccessfulHttpResponse response) {
+            if (!token.isCancelled()) {
+                CancellationToken.runWith(token, () -> delegate.onOpen(response));
+            }
+        }
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            if (token.isCancelled()) {
+                abort();
+                return;
+            }
+            CancellationToken.runWith(token, () -> delegate.onEvent(event));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (terminated.compareAndSet(false, true)) {
+                Throwable error = token.isCancelled() ? new CancellationException("生成已取消") : throwable;
+                CancellationToken.runWith(token, () -> delegate.onError(error));
+            }
+        }
+
+        @Override
+        public void onClose() {
+            if (token.isCancelled()) {
+                abort();
+                return;
+            }
+            if (terminated.compareAndSet(false, true)) {
+                CancellationToken.runWith(token, delegate::onClose);
+            }
+        }
+
+        private void abort() {
+            if (terminated.compareAndSet(false, true)) {
+                delegate.onError(new CancellationException("生成已取消"));
+            }
+        }
+    }
+
+    /**
+     * 构建器，包装 classpath 上默认的 HTTP 客户端构建器
+     */
+    public static class Builder implements HttpClientBuilder {
+
+        private final HttpClientBuilder delegate = HttpClientBuilderLoader.loadHttpClientBuilder();
+
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            delegate.connectTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            delegate.readTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return new CancellableHttpClient(delegate.build());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.codemother.core.cancel;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 取消令牌
+ * 一次生成（或一次构建）持有一个令牌，生成被取消（客户端断开且未在宽限期内重连）时取消，已注册的回调（关闭模型响应流、取消构建、终止 npm 进程）随即执行。
+ * 令牌可绑定到当前线程，模型 HTTP 客户端、构建器等无法直接传参的下游通过 {@link #current()} 获取。
+ *
+ * @author kkoma
+ */
+@Slf4j
+public class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean cancelled;
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    /**
+     * 取消并执行已注册的回调（重复调用无效果）
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                log.warn("执行取消回调失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 已取消时抛出 {@link CancellationException}
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("生成已取消");
+        }
+    }
+
+    /**
+     * 注册取消回调，已取消时立即执行
+     *
+     * @param callback 回调
+     * @return 注销回调的操作（资源正常释放后调用）
+     */
+    public Runnable onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> {
+        };
+    }
+
+    /**
+     * 当前线程绑定的令牌
+     *
+     * @return 令牌，未绑定时返回 null
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在绑定令牌的情况下执行操作，结束后恢复原绑定
+     *
+     * @param token  令牌
+     * @param action 操作
+     */
+    public static void runWith(CancellationToken token, Runnable action) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(token);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
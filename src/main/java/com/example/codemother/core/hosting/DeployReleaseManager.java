@@ -0,0 +1,318 @@
+package com.example.codemother.core.hosting;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.codemother.constant.AppConstant;
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 部署版本管理
+ * 每次部署生成一个不可变的版本目录 {deployKey}/releases/{releaseId}，与上一版本内容相同的文件直接硬链接，
+ * 只复制变化的文件；版本准备完成后原子切换 current 软链接，访问中的请求不会看到新旧混合的目录。
+ * 每个版本记录文件清单（大小、修改时间、内容哈希），源文件大小和修改时间未变时直接复用清单中的哈希，
+ * 只有变化的文件需要读取，部署的 I/O 与变化的文件量成正比。
+ * 不支持软链接的环境（如无权限的 Windows）改为原子替换 current 指针文件（内容为版本号）。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class DeployReleaseManager {
+
+    private static final String RELEASES_DIR = "releases";
+
+    private static final String CURRENT_LINK = "current";
+
+    /**
+     * 版本文件清单的后缀，清单保存为 releases/.{releaseId}.manifest，不在站点目录内，不会被访问到
+     */
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    /**
+     * 保留的历史版本数（含当前版本）
+     */
+    @Value("${deploy.release.retain:5}")
+    private int retainReleases;
+
+    private final ConcurrentHashMap<String, ReentrantLock> deployLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 发布新版本并切换为当前版本
+     *
+     * @param deployKey 部署标识
+     * @param sourceDir 部署源目录（生成目录或 Vue 项目的 dist）
+     * @return 版本号
+     */
+    public String publish(String deployKey, Path sourceDir) {
+        ReentrantLock lock = deployLocks.computeIfAbsent(deployKey, k -> new ReentrantLock());
+        lock.lock();
+        Path staging = null;
+        try {
+            Path siteDir = getSiteDir(deployKey);
+            Path releasesDir = siteDir.resolve(RELEASES_DIR);
+            Files.createDirectories(releasesDir);
+            Path previous = resolveCurrentRelease(deployKey);
+            Map<String, FileDigest> previousManifest = previous == null
+                    ? null : readManifest(releasesDir, previous.getFileName().toString());
+            String releaseId = DateUtil.format(DateUtil.date(), DatePattern.PURE_DATETIME_MS_PATTERN)
+                    + RandomUtil.randomNumbers(3);
+            staging = releasesDir.resolve("." + releaseId + "." + IdUtil.fastSimpleUUID() + ".tmp");
+            Map<String, FileDigest> manifest = new LinkedHashMap<>();
+            int[] stats = copyRelease(sourceDir, staging, previous, previousManifest, manifest);
+            writeManifest(releasesDir, releaseId, manifest);
+            // 新版本预压缩（硬链接的文件已有压缩变体，会被跳过）
+            StaticAssetPrecompressor.precompress(staging);
+            Path release = releasesDir.resolve(releaseId);
+            Files.move(staging, release, StandardCopyOption.ATOMIC_MOVE);
+            staging = null;
+            switchCurrent(siteDir, releaseId);
+            log.info("部署版本发布成功: {}/{}，复制 {} 个文件，硬链接 {} 个文件", deployKey, releaseId, stats[0], stats[1]);
+            pruneReleases(siteDir, releaseId);
+            return releaseId;
+        } catch (IOException e) {
+            log.error("部署版本发布失败: {}", deployKey, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败：" + e.getMessage());
+        } finally {
+            if (staging != null) {
+                FileUtil.del(staging);
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 列出已保留的版本（从新到旧）
+     *
+     * @param deployKey 部署标识
+     * @return 版本号列表
+     */
+    public List<String> listReleases(String deployKey) {
+        Path releasesDir = getSiteDir(deployKey).resolve(RELEASES_DIR);
+        if (!Files.isDirectory(releasesDir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> stream = Files.list(releasesDir)) {
+            return stream.map(path -> path.getFileName().toString())
+                    .filter(name -> !name.startsWith("."))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("读取部署版本列表失败: {}", deployKey, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 解析当前版本目录（真实路径），一次请求内使用同一个版本；尚未发布过版本时返回 null
+     *
+     * @param deployKey 部署标识
+     * @return 当前版本目录
+     */
+    public Path resolveCurrentRelease(String deployKey) {
+        Path siteDir = getSiteDir(deployKey);
+        Path current = siteDir.resolve(CURRENT_LINK);
+        try {
+            if (Files.isDirectory(current)) {
+                return current.toRealPath();
+            }
+            if (Files.isRegularFile(current, LinkOption.NOFOLLOW_LINKS)) {
+                String releaseId = Files.readString(current, StandardCharsets.UTF_8).trim();
+                Path release = siteDir.resolve(RELEASES_DIR).resolve(releaseId);
+                return Files.isDirectory(release) ? release.toRealPath() : null;
+            }
+        } catch (IOException e) {
+            log.warn("解析当前部署版本失败: {}", deployKey, e);
+        }
+        return null;
+    }
+
+    private Path getSiteDir(String deployKey) {
+        return Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR, deployKey).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 生成版本目录：与上一版本内容相同的文件（及其压缩变体）硬链接，其余文件复制
+     *
+     * @param previousManifest 上一版本的文件清单，为 null 时（旧版本没有清单）逐字节比较
+     * @param manifest         本版本的文件清单（输出）
+     * @return [复制数, 硬链接数]
+     */
+    private int[] copyRelease(Path sourceDir, Path target, Path previous, Map<String, FileDigest> previousManifest,
+                              Map<String, FileDigest> manifest) throws IOException {
+        int[] stats = {0, 0};
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(sourceDir.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                // 跳过保存器写入中的临时文件
+                if (!attrs.isRegularFile() || file.getFileName().toString().endsWith(".tmp")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String relativePath = sourceDir.relativize(file).toString();
+                Path dest = target.resolve(relativePath);
+                Path previousFile = previous == null ? null : previous.resolve(relativePath);
+                FileDigest previousDigest = previousManifest == null ? null : previousManifest.get(relativePath);
+                FileDigest digest = digest(file, attrs, previousDigest);
+                manifest.put(relativePath, digest);
+                boolean sameContent = previousManifest == null
+                        ? previousFile != null && isSameContent(file, attrs.size(), previousFile)
+                        : previousDigest != null && previousDigest.sameContent(digest) && Files.isRegularFile(previousFile);
+                if (sameContent && tryLink(dest, previousFile)) {
+                    stats[1]++;
+                    for (String suffix : List.of(StaticAssetPrecompressor.GZIP_SUFFIX, StaticAssetPrecompressor.BROTLI_SUFFIX)) {
+                        Path previousVariant = previousFile.resolveSibling(previousFile.getFileName() + suffix);
+                        Path destVariant = dest.resolveSibling(dest.getFileName() + suffix);
+                        if (Files.isRegularFile(previousVariant) && Files.notExists(destVariant)) {
+                            tryLink(destVariant, previousVariant);
+                        }
+                    }
+                } else if (Files.notExists(dest)) {
+                    Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                    stats[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 源文件的清单记录：大小和修改时间与上一版本一致时复用其哈希，否则读取文件计算
+     */
+    private FileDigest digest(Path file, BasicFileAttributes attrs, FileDigest previousDigest) {
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (previousDigest != null && previousDigest.size() == size && previousDigest.lastModified() == lastModified) {
+            return previousDigest;
+        }
+        return new FileDigest(size, lastModified, DigestUtil.sha256Hex(file.toFile()));
+    }
+
+    /**
+     * 读取版本的文件清单，不存在或无法读取时返回 null
+     */
+    private Map<String, FileDigest> readManifest(Path releasesDir, String releaseId) {
+        Path manifestFile = releasesDir.resolve("." + releaseId + MANIFEST_SUFFIX);
+        if (!Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+        try {
+            Map<String, FileDigest> manifest = new HashMap<>();
+            for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+                // 哈希、大小、修改时间、相对路径，以制表符分隔（路径放最后）
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 4) {
+                    manifest.put(parts[3], new FileDigest(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[0]));
+                }
+            }
+            return manifest;
+        } catch (IOException | NumberFormatException e) {
+            log.warn("读取部署版本清单失败: {}", manifestFile, e);
+            return null;
+        }
+    }
+
+    private void writeManifest(Path releasesDir, String releaseId, Map<String, FileDigest> manifest) throws IOException {
+        List<String> lines = new ArrayList<>(manifest.size());
+        manifest.forEach((path, digest) ->
+                lines.add(digest.sha256() + "\t" + digest.size() + "\t" + digest.lastModified() + "\t" + path));
+        Files.write(releasesDir.resolve("." + releaseId + MANIFEST_SUFFIX), lines, StandardCharsets.UTF_8);
+    }
+
+    private boolean isSameContent(Path file, long size, Path previousFile) throws IOException {
+        return Files.isRegularFile(previousFile)
+                && Files.size(previousFile) == size
+                && Files.mismatch(file, previousFile) == -1;
+    }
+
+    private boolean tryLink(Path dest, Path existing) {
+        try {
+            Files.deleteIfExists(dest);
+            Files.createLink(dest, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("创建硬链接失败，改为复制: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 原子切换 current：先创建临时链接，再重命名覆盖
+     */
+    private void switchCurrent(Path siteDir, String releaseId) throws IOException {
+        Path current = siteDir.resolve(CURRENT_LINK);
+        Path tempLink = siteDir.resolve("." + CURRENT_LINK + "." + IdUtil.fastSimpleUUID());
+        try {
+            Files.createSymbolicLink(tempLink, Paths.get(RELEASES_DIR, releaseId));
+        } catch (IOException | UnsupportedOperationException e) {
+            // 不支持软链接时使用指针文件
+            Files.writeString(tempLink, releaseId, StandardCharsets.UTF_8);
+        }
+        try {
+            Files.move(tempLink, current, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempLink, current, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempLink);
+        }
+    }
+
+    /**
+     * 清理超出保留数量的旧版本（当前版本不会被清理）
+     */
+    private void pruneReleases(Path siteDir, String currentReleaseId) {
+        List<String> releases = new ArrayList<>(listReleases(siteDir.getFileName().toString()));
+        for (int i = Math.max(retainReleases, 1); i < releases.size(); i++) {
+            String releaseId = releases.get(i);
+            if (!releaseId.equals(currentReleaseId)) {
+                FileUtil.del(siteDir.resolve(RELEASES_DIR).resolve(releaseId));
+                FileUtil.del(siteDir.resolve(RELEASES_DIR).resolve("." + releaseId + MANIFEST_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * 版本清单中的文件记录
+     */
+    private record FileDigest(long size, long lastModified, String sha256) {
+
+        private boolean sameContent(FileDigest other) {
+            return size == other.size && sha256.equals(other.sha256);
+        }
+    }
+}
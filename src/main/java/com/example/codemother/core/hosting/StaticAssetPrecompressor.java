@@ -0,0 +1,120 @@
+package com.example.codemother.core.hosting;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态资源预压缩
+ * 部署时为文本类资源生成 .gz 变体，访问时直接返回压缩文件，不在请求路径上压缩。
+ * JDK 没有 Brotli 编码器，.br 变体不在此生成；构建产物中已有的 .br 文件会被静态托管优先使用。
+ *
+ * @author kkoma
+ */
+@Slf4j
+public class StaticAssetPrecompressor {
+
+    public static final String GZIP_SUFFIX = ".gz";
+
+    public static final String BROTLI_SUFFIX = ".br";
+
+    /**
+     * 小于该大小的文件压缩收益不明显，不生成压缩变体
+     */
+    private static final long MIN_COMPRESS_SIZE = 1024;
+
+    /**
+     * 需要预压缩的文件扩展名
+     */
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "html", "htm", "css", "js", "mjs", "json", "svg", "txt", "xml", "map", "ico", "wasm"
+    );
+
+    private StaticAssetPrecompressor() {
+    }
+
+    /**
+     * 为站点目录下的可压缩文件生成 .gz 变体（压缩后不更小的文件跳过）
+     *
+     * @param siteDir 站点目录
+     */
+    public static void precompress(Path siteDir) {
+        if (!Files.isDirectory(siteDir)) {
+            return;
+        }
+        int[] count = {0};
+        try {
+            Files.walkFileTree(siteDir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && attrs.size() >= MIN_COMPRESS_SIZE && isCompressible(file)
+                            && !hasFreshVariant(file, attrs)) {
+                        if (gzip(file, attrs.size())) {
+                            count[0]++;
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            log.info("静态资源预压缩完成: {}，生成 {} 个 gzip 文件", siteDir, count[0]);
+        } catch (IOException e) {
+            // 预压缩失败不影响部署，访问时返回原始文件
+            log.warn("静态资源预压缩失败: {}, 错误信息: {}", siteDir, e.getMessage());
+        }
+    }
+
+    /**
+     * 是否为可压缩的文本类资源
+     */
+    public static boolean isCompressible(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSIBLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    /**
+     * 已存在与原文件修改时间一致的 .gz 变体（如从上一版本硬链接而来）时无需重新压缩
+     */
+    private static boolean hasFreshVariant(Path file, BasicFileAttributes attrs) throws IOException {
+        Path variant = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+        return Files.isRegularFile(variant)
+                && Files.getLastModifiedTime(variant).equals(attrs.lastModifiedTime());
+    }
+
+    private static boolean gzip(Path file, long originalSize) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+        Path temp = file.resolveSibling("." + file.getFileName() + GZIP_SUFFIX + ".tmp");
+        try (OutputStream out = new BestCompressionGzipOutputStream(Files.newOutputStream(temp))) {
+            Files.copy(file, out);
+        }
+        if (Files.size(temp) >= originalSize) {
+            Files.delete(temp);
+            return false;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // 与原文件保持相同的修改时间，便于判断变体是否过期
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(file));
+        return true;
+    }
+
+    /**
+     * 使用最高压缩级别的 GZIP 输出流（部署时一次压缩，多次读取）
+     */
+    private static class BestCompressionGzipOutputStream extends GZIPOutputStream {
+
+        private BestCompressionGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.codemother.core.hosting;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.codemother.constant.AppConstant;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Pattern;
+
+/**
+ * 已部署应用的静态托管
+ * 优先返回部署时预压缩的 br / gzip 变体；ETag 为文件内容哈希（强校验），按文件大小和修改时间缓存；
+ * Vite 构建的带哈希资源使用 immutable 长缓存，其余资源每次协商；小文件内容放在内存 LRU 中，大文件通过 transferTo 发送。
+ * 站点通过与 API 不同源的 deploy.host 隔离；请求未经该域名到达（与 API 同源）时才加 CSP sandbox，使页面运行在不透明源中。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class StaticSiteHost {
+
+    @Autowired
+    private DeployReleaseManager deployReleaseManager;
+
+    private static final String INDEX_FILE = "index.html";
+
+    /**
+     * 部署标识只允许字母、数字、下划线和短横线，防止路径穿越
+     */
+    private static final Pattern DEPLOY_KEY_PATTERN = Pattern.compile("^[A-Za-z0-9_-]{1,64}$");
+
+    /**
+     * Vite 构建产物的带哈希资源路径，如 assets/index-DiwrgTda.js（只认 assets 目录下 -[8 位哈希] 的形式，
+     * hero-background.jpg 这类普通文件名不算，重新部署后需要协商更新）
+     */
+    private static final Pattern HASHED_ASSET_PATTERN = Pattern.compile("^assets/.+-[A-Za-z0-9_-]{8}\\.[a-z0-9]+$");
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * 站点页面由模型生成、不可信：与 API 同源访问时沙箱化为不透明源（不含 allow-same-origin），脚本无法携带登录态发起请求
+     */
+    private static final String SANDBOX_CONTENT_SECURITY_POLICY = "sandbox allow-scripts allow-forms allow-popups";
+
+    /**
+     * 部署站点的访问地址，与 API 不同源
+     */
+    @Value("${deploy.host:http://deploy.localhost:8123/api/deploy}")
+    private String deployHost;
+
+    /**
+     * 小文件内存缓存的单文件大小上限（字节）
+     */
+    @Value("${static-hosting.memory-cache.max-file-size:65536}")
+    private long maxMemoryFileSize;
+
+    /**
+     * 小文件内存缓存总大小（MB）
+     */
+    @Value("${static-hosting.memory-cache.max-size-mb:64}")
+    private long maxMemoryCacheSizeMb;
+
+    /**
+     * 文件 ETag 缓存（路径 -> 大小、修改时间、ETag）
+     */
+    private final Cache<String, FileMeta> metaCache = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    /**
+     * 小文件内容缓存（路径 + 大小 + 修改时间 -> 内容），文件变化后键随之变化，旧内容按 LRU 淘汰
+     */
+    private Cache<String, byte[]> bodyCache;
+
+    private String deployHostName;
+
+    private int deployPort;
+
+    @PostConstruct
+    public void init() {
+        URI deployUri = URI.create(deployHost);
+        deployHostName = deployUri.getHost();
+        deployPort = deployUri.getPort() != -1 ? deployUri.getPort()
+                : "https".equalsIgnoreCase(deployUri.getScheme()) ? 443 : 80;
+        bodyCache = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryCacheSizeMb * 1024 * 1024)
+                .weigher((String key, byte[] body) -> body.length)
+                .build();
+    }
+
+    /**
+     * 请求是否经由部署站点的独立域名到达（此时页面与 API 不同源，无需沙箱，可正常使用存储和 Cookie）
+     */
+    private boolean isDeployOrigin(HttpServletRequest request) {
+        return request.getServerName().equalsIgnoreCase(deployHostName) && request.getServerPort() == deployPort;
+    }
+
+    /**
+     * 部署站点的根目录（当前版本目录的真实路径，一次请求内不受版本切换影响）
+     *
+     * @param deployKey 部署标识
+     * @return 站点根目录
+     */
+    public Path resolveSiteRoot(String deployKey) {
+        Path currentRelease = deployReleaseManager.resolveCurrentRelease(deployKey);
+        // 兼容未使用版本目录的旧部署
+        return currentRelease != null ? currentRelease : Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR, deployKey);
+    }
+
+    /**
+     * 返回部署站点中的静态文件
+     *
+     * @param deployKey    部署标识
+     * @param relativePath 站点内的相对路径
+     * @param request      请求
+     * @param response     响应
+     */
+    public void serve(String deployKey, String relativePath, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        if (!isDeployOrigin(request)) {
+            response.setHeader("Content-Security-Policy", SANDBOX_CONTENT_SECURITY_POLICY);
+        }
+        if (!DEPLOY_KEY_PATTERN.matcher(deployKey).matches()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path file = resolveFile(resolveSiteRoot(deployKey), relativePath);
+        if (file == null && isHashedAsset(relativePath)) {
+            // 切换版本前加载的页面仍会引用旧版本的带哈希资源，从保留的历史版本中查找
+            file = resolveFromPreviousReleases(deployKey, relativePath);
+        }
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String fileName = file.getFileName().toString();
+        boolean compressible = StaticAssetPrecompressor.isCompressible(file);
+        Path body = file;
+        String contentEncoding = null;
+        if (compressible) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            Path brotli = file.resolveSibling(fileName + StaticAssetPrecompressor.BROTLI_SUFFIX);
+            Path gzip = file.resolveSibling(fileName + StaticAssetPrecompressor.GZIP_SUFFIX);
+            if (accepts(acceptEncoding, "br") && Files.isRegularFile(brotli)) {
+                body = brotli;
+                contentEncoding = "br";
+            } else if (accepts(acceptEncoding, "gzip") && Files.isRegularFile(gzip)) {
+                body = gzip;
+                contentEncoding = "gzip";
+            }
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        FileMeta meta = getFileMeta(body);
+        response.setContentType(getContentType(fileName));
+        if (contentEncoding != null) {
+            response.setHeader("Content-Encoding", contentEncoding);
+        }
+        response.setHeader("ETag", meta.etag());
+        response.setHeader("Cache-Control", isHashedAsset(relativePath) ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(meta.etag()) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLengthLong(meta.size());
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+        if (meta.size() <= maxMemoryFileSize) {
+            String cacheKey = body + ":" + meta.size() + ":" + meta.lastModified();
+            byte[] content = bodyCache.get(cacheKey, key -> readAllBytes(meta.path()));
+            response.getOutputStream().write(content);
+            return;
+        }
+        transferFile(body, meta.size(), response);
+    }
+
+    /**
+     * 解析请求文件：目录返回其 index.html；不存在且无扩展名的路径回退到站点 index.html（前端路由）；
+     * 路径越出站点目录时返回 null
+     */
+    private Path resolveFile(Path siteRoot, String relativePath) {
+        Path root = siteRoot.toAbsolutePath().normalize();
+        Path target = root.resolve(relativePath).normalize();
+        if (!target.startsWith(root)) {
+            return null;
+        }
+        if (Files.isDirectory(target)) {
+            target = target.resolve(INDEX_FILE);
+        }
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+        String lastSegment = target.getFileName() == null ? "" : target.getFileName().toString();
+        if (!lastSegment.contains(".")) {
+            Path index = root.resolve(INDEX_FILE);
+            if (Files.isRegularFile(index)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private Path resolveFromPreviousReleases(String deployKey, String relativePath) {
+        Path releasesDir = Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR, deployKey, "releases");
+        for (String releaseId : deployReleaseManager.listReleases(deployKey)) {
+            Path root = releasesDir.resolve(releaseId).toAbsolutePath().normalize();
+            Path target = root.resolve(relativePath).normalize();
+            if (target.startsWith(root) && Files.isRegularFile(target)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取文件元数据，大小或修改时间变化时重新计算内容哈希
+     */
+    private FileMeta getFileMeta(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String key = file.toString();
+        FileMeta cached = metaCache.getIfPresent(key);
+        if (cached != null && cached.size() == size && cached.lastModified() == lastModified) {
+            return cached;
+        }
+        String etag = "\"" + DigestUtil.sha256Hex(file.toFile()).substring(0, 32) + "\"";
+        FileMeta meta = new FileMeta(file, size, lastModified, etag);
+        metaCache.put(key, meta);
+        return meta;
+    }
+
+    private void transferFile(Path file, long size, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private byte[] readAllBytes(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase(encoding)) {
+                return tokens.length < 2 || !tokens[1].replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为 Vite 带哈希资源
+     *
+     * @param relativePath 站点内的相对路径
+     */
+    private boolean isHashedAsset(String relativePath) {
+        return HASHED_ASSET_PATTERN.matcher(relativePath).matches();
+    }
+
+    private String getContentType(String fileName) {
+        MediaType mediaType = MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        String type = mediaType.toString();
+        boolean text = "text".equals(mediaType.getType()) || type.contains("javascript") || type.contains("json")
+                || type.contains("svg") || type.contains("xml");
+        return text ? type + ";charset=UTF-8" : type;
+    }
+
+    /**
+     * 文件元数据
+     */
+    private record FileMeta(Path path, long size, long lastModified, String etag) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.codemother.core.parser;
+
+/**
+ * 代码块监听器
+ * 流式解析过程中回调，只针对需要提取的代码块（目标语言的第一个代码块）
+ *
+ * @author kkoma
+ */
+@FunctionalInterface
+public interface CodeBlockListener {
+
+    /**
+     * 代码块开始
+     *
+     * @param language 代码块语言（html / css / js）
+     */
+    default void onBlockStart(String language) {
+    }
+
+    /**
+     * 代码块增量内容（已去除首尾空白，依次拼接即为完整代码）
+     *
+     * @param language 代码块语言
+     * @param content  增量内容
+     */
+    default void onBlockContent(String language, String content) {
+    }
+
+    /**
+     * 代码块被丢弃（内容为空或流结束时仍未闭合）
+     *
+     * @param language 代码块语言
+     */
+    default void onBlockDiscard(String language) {
+    }
+
+    /**
+     * 代码块解析完成
+     *
+     * @param language 代码块语言（html / css / js）
+     * @param code     去除首尾空白后的代码内容
+     */
+    void onBlockComplete(String language, String code);
+}
@@ -30,4 +30,15 @@ public class CodeParserExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 创建流式代码解析器（每个流一个实例）
+     *
+     * @param codeGenType 代码生成类型
+     * @param listener    代码块完成监听器
+     * @return 流式解析器
+     */
+    public static StreamingCodeParser createStreamingParser(CodeGenTypeEnum codeGenType, CodeBlockListener listener) {
+        return new StreamingCodeParser(codeGenType, listener);
+    }
 }
@@ -0,0 +1,287 @@
+package com.example.codemother.core.parser;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.codemother.ai.model.HtmlCodeResult;
+import com.example.codemother.ai.model.MultiFileCodeResult;
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import com.example.codemother.model.enums.CodeGenTypeEnum;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流式代码解析器（有状态，每个流一个实例）
+ * 随 token 增量识别 ```html / ```css / ```js 代码块，代码块闭合时立即回调，
+ * 解析结果与 HtmlCodeParser / MultiFileCodeParser 保持一致：每种语言只取第一个代码块，内容去除首尾空白
+ *
+ * @author kkoma
+ */
+public class StreamingCodeParser {
+
+    /**
+     * 代码块围栏
+     */
+    private static final String FENCE = "```";
+
+    /**
+     * 语言标识行的最大长度，超出视为普通文本，避免异常输出撑大缓冲区
+     */
+    private static final int MAX_INFO_LENGTH = 64;
+
+    private final CodeGenTypeEnum codeGenType;
+
+    /**
+     * 需要提取的语言
+     */
+    private final Set<String> targetLanguages;
+
+    private final CodeBlockListener listener;
+
+    /**
+     * 已完成的代码块（语言 -> 代码）
+     */
+    private final Map<String, String> completedBlocks = new HashMap<>();
+
+    /**
+     * 尚未消费的输入，只保留可能跨 chunk 的围栏或语言标识
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * 当前代码块内容，非目标语言或重复语言的代码块不保留（为 null）
+     */
+    private StringBuilder currentCode;
+
+    private String currentLanguage;
+
+    /**
+     * 当前代码块是否已出现非空白内容（用于去除开头空白）
+     */
+    private boolean contentStarted;
+
+    /**
+     * 暂缓回调的末尾空白，后续出现非空白内容时再一并回调（用于去除结尾空白）
+     */
+    private final StringBuilder trailingWhitespace = new StringBuilder();
+
+    /**
+     * HTML 模式兜底用的原始内容：未解析出 HTML 代码块时整体作为 HTML，解析成功后即释放
+     */
+    private StringBuilder rawContent;
+
+    private State state = State.TEXT;
+
+    private enum State {
+        /**
+         * 代码块外的普通文本
+         */
+        TEXT,
+        /**
+         * 已读到开始围栏，正在读取语言标识
+         */
+        INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    public StreamingCodeParser(CodeGenTypeEnum codeGenType, CodeBlockListener listener) {
+        this.codeGenType = codeGenType;
+        this.listener = listener;
+        this.targetLanguages = switch (codeGenType) {
+            case HTML -> Set.of("html");
+            case MULTI_FILE -> Set.of("html", "css", "js");
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+        if (codeGenType == CodeGenTypeEnum.HTML) {
+            this.rawContent = new StringBuilder();
+        }
+    }
+
+    /**
+     * 追加一个流式片段
+     *
+     * @param chunk 代码片段
+     */
+    public synchronized void append(String chunk) {
+        if (StrUtil.isEmpty(chunk)) {
+            return;
+        }
+        if (rawContent != null) {
+            rawContent.append(chunk);
+        }
+        pending.append(chunk);
+        int pos = 0;
+        boolean needMore = false;
+        while (!needMore) {
+            switch (state) {
+                case TEXT -> {
+                    int fenceIndex = pending.indexOf(FENCE, pos);
+                    if (fenceIndex < 0) {
+                        // 保留末尾可能属于下一个围栏的反引号
+                        pos = Math.max(pos, pending.length() - (FENCE.length() - 1));
+                        needMore = true;
+                    } else {
+                        pos = fenceIndex + FENCE.length();
+                        state = State.INFO;
+                    }
+                }
+                case INFO -> {
+                    int lineEnd = pending.indexOf("\n", pos);
+                    if (lineEnd >= 0) {
+                        startBlock(pending.substring(pos, lineEnd));
+                        pos = lineEnd + 1;
+                        state = State.CODE;
+                    } else if (pending.length() - pos > MAX_INFO_LENGTH) {
+                        state = State.TEXT;
+                    } else {
+                        needMore = true;
+                    }
+                }
+                case CODE -> {
+                    int fenceIndex = pending.indexOf(FENCE, pos);
+                    int end = fenceIndex >= 0 ? fenceIndex : Math.max(pos, pending.length() - (FENCE.length() - 1));
+                    if (currentCode != null) {
+                        appendCode(pending, pos, end);
+                    }
+                    pos = end;
+                    if (fenceIndex >= 0) {
+                        pos += FENCE.length();
+                        completeBlock();
+                        state = State.TEXT;
+                    } else {
+                        needMore = true;
+                    }
+                }
+            }
+        }
+        pending.delete(0, pos);
+    }
+
+    /**
+     * 流结束，组装最终解析结果（未闭合的代码块丢弃）
+     *
+     * @return 解析结果（HtmlCodeResult 或 MultiFileCodeResult）
+     */
+    public synchronized Object finish() {
+        abort();
+        return switch (codeGenType) {
+            case HTML -> {
+                HtmlCodeResult result = new HtmlCodeResult();
+                String htmlCode = completedBlocks.get("html");
+                if (StrUtil.isNotBlank(htmlCode)) {
+                    result.setHtmlCode(htmlCode);
+                } else {
+                    // 如果没有找到代码块，将整个内容作为HTML
+                    result.setHtmlCode(rawContent.toString().trim());
+                }
+                yield result;
+            }
+            case MULTI_FILE -> {
+                MultiFileCodeResult result = new MultiFileCodeResult();
+                result.setHtmlCode(StrUtil.emptyToNull(completedBlocks.get("html")));
+                result.setCssCode(StrUtil.emptyToNull(completedBlocks.get("css")));
+                result.setJsCode(StrUtil.emptyToNull(completedBlocks.get("js")));
+                yield result;
+            }
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
+
+    /**
+     * 中止解析（流出错或被取消），丢弃未闭合的代码块
+     */
+    public synchronized void abort() {
+        pending.setLength(0);
+        state = State.TEXT;
+        if (currentCode != null) {
+            currentCode = null;
+            listener.onBlockDiscard(currentLanguage);
+        }
+    }
+
+    /**
+     * 是否已有代码块解析完成并回调
+     */
+    public boolean hasCompletedBlocks() {
+        return completedBlocks.values().stream().anyMatch(StrUtil::isNotBlank);
+    }
+
+    /**
+     * 开始一个代码块
+     *
+     * @param info 围栏后的语言标识
+     */
+    private void startBlock(String info) {
+        String language = normalizeLanguage(info);
+        currentLanguage = language;
+        boolean wanted = targetLanguages.contains(language) && !completedBlocks.containsKey(language);
+        currentCode = wanted ? new StringBuilder() : null;
+        if (wanted) {
+            contentStarted = false;
+            trailingWhitespace.setLength(0);
+            listener.onBlockStart(language);
+        }
+    }
+
+    /**
+     * 追加代码块内容，并将去除首尾空白后的增量回调给监听器
+     */
+    private void appendCode(CharSequence source, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        currentCode.append(source, start, end);
+        if (!contentStarted) {
+            while (start < end && source.charAt(start) <= ' ') {
+                start++;
+            }
+            if (start == end) {
+                return;
+            }
+            contentStarted = true;
+        }
+        int visibleEnd = end;
+        while (visibleEnd > start && source.charAt(visibleEnd - 1) <= ' ') {
+            visibleEnd--;
+        }
+        if (visibleEnd > start) {
+            String content = trailingWhitespace.toString() + source.subSequence(start, visibleEnd);
+            trailingWhitespace.setLength(0);
+            listener.onBlockContent(currentLanguage, content);
+        }
+        trailingWhitespace.append(source, visibleEnd, end);
+    }
+
+    /**
+     * 结束当前代码块，目标语言的第一个代码块回调给监听器
+     */
+    private void completeBlock() {
+        if (currentCode == null) {
+            return;
+        }
+        String code = currentCode.toString().trim();
+        currentCode = null;
+        completedBlocks.put(currentLanguage, code);
+        if (StrUtil.isBlank(code)) {
+            listener.onBlockDiscard(currentLanguage);
+            return;
+        }
+        if ("html".equals(currentLanguage)) {
+            // HTML 已解析成功，不再需要兜底内容
+            rawContent = null;
+        }
+        listener.onBlockComplete(currentLanguage, code);
+    }
+
+    /**
+     * 统一语言标识
+     */
+    private String normalizeLanguage(String info) {
+        String language = info.trim().toLowerCase();
+        return "javascript".equals(language) ? "js" : language;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.codemother.core.run;
+
+import cn.hutool.json.JSONUtil;
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 一次生成的运行实例
+ * 独立订阅生成流，为每个事件分配递增序号（SSE id 为 {@code runId:序号}），最近的事件保存在有界环形缓冲区中，
+ * 缓冲区满时最旧的一批事件写入 Redis 后移出（未启用或写入失败时直接丢弃）。
+ * 客户端连接只是运行的订阅者：断开不影响生成，重连时从上次收到的序号之后回放并继续接收；
+ * 所有订阅者断开超过宽限期后才取消生成。
+ *
+ * @author kkoma
+ */
+@Slf4j
+class GenerationRun {
+
+    private static final String EXPIRED_MESSAGE = "生成进度已过期，无法续传，请刷新后查看生成结果";
+
+    private final String runId;
+
+    private final long userId;
+
+    private final long appId;
+
+    private final GenerationRunManager manager;
+
+    private final ArrayDeque<ServerSentEvent<String>> buffer;
+
+    private final int capacity;
+
+    private final List<FluxSink<ServerSentEvent<String>>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * 缓冲区中第一个事件的序号
+     */
+    private long firstSeq;
+
+    /**
+     * 下一个事件的序号
+     */
+    private long nextSeq;
+
+    /**
+     * 已写入 Redis 的事件数（序号 0 起连续），等于 firstSeq 时缓冲区之前的事件均可从 Redis 回放
+     */
+    private long spilledCount;
+
+    private boolean spillEnabled;
+
+    private boolean terminated;
+
+    private Throwable error;
+
+    private Disposable upstream;
+
+    private ScheduledFuture<?> graceTimer;
+
+    GenerationRun(String runId, long userId, long appId, int capacity, boolean spillEnabled, GenerationRunManager manager) {
+        this.runId = runId;
+        this.userId = userId;
+        this.appId = appId;
+        this.capacity = capacity;
+        this.spillEnabled = spillEnabled;
+        this.manager = manager;
+        this.buffer = new ArrayDeque<>(Math.min(capacity, 256));
+    }
+
+    String getRunId() {
+        return runId;
+    }
+
+    long getUserId() {
+        return userId;
+    }
+
+    long getAppId() {
+        return appId;
+    }
+
+    /**
+     * 开始运行：先发出携带运行 id 的 run 事件，再订阅生成流；在首个订阅者连接前同样按宽限期计时
+     *
+     * @param events      生成流
+     * @param onTerminate 生成结束、出错或取消时执行（释放生成许可等）
+     */
+    void start(Flux<ServerSentEvent<String>> events, Runnable onTerminate) {
+        append(ServerSentEvent.<String>builder()
+                .event("run")
+                .data(JSONUtil.toJsonStr(Map.of("runId", runId)))
+                .build());
+        synchronized (this) {
+            graceTimer = manager.scheduleGrace(this::cancelIfDetached);
+        }
+        Disposable subscription = events
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        // 宽限期后取消的运行不会收到结束信号，之后的续传回放已有事件后以错误结束
+                        fail(new BusinessException(ErrorCode.OPERATION_ERROR, "客户端断开时间过长，生成已取消"));
+                    }
+                    onTerminate.run();
+                    manager.onFinished(this);
+                })
+                .subscribe(this::append, this::fail, this::complete);
+        synchronized (this) {
+            upstream = subscription;
+        }
+    }
+
+    /**
+     * 订阅运行，回放序号 fromSeq 及之后的事件并继续接收新事件
+     *
+     * @param fromSeq 起始序号
+     * @return 事件流
+     */
+    Flux<ServerSentEvent<String>> subscribe(long fromSeq) {
+        return Flux.defer(() -> {
+            long first;
+            long spilled;
+            synchronized (this) {
+                first = firstSeq;
+                spilled = spilledCount;
+            }
+            if (fromSeq >= first) {
+                return attach(fromSeq);
+            }
+            // 需要的事件已移出缓冲区，先从 Redis 回放，再从缓冲区继续（期间又有事件移出时重复此过程）
+            if (spilled < first) {
+                return Flux.error(new BusinessException(ErrorCode.OPERATION_ERROR, EXPIRED_MESSAGE));
+            }
+            List<ServerSentEvent<String>> spilledEvents = manager.readSpilled(runId, fromSeq, first - 1);
+            if (spilledEvents.size() != first - fromSeq) {
+                return Flux.error(new BusinessException(ErrorCode.OPERATION_ERROR, EXPIRED_MESSAGE));
+            }
+            return Flux.fromIterable(spilledEvents).concatWith(subscribe(first));
+        });
+    }
+
+    private Flux<ServerSentEvent<String>> attach(long fromSeq) {
+        return Flux.create(sink -> {
+            sink.onDispose(() -> detach(sink));
+            synchronized (this) {
+                if (fromSeq < firstSeq) {
+                    sink.error(new BusinessException(ErrorCode.OPERATION_ERROR, EXPIRED_MESSAGE));
+                    return;
+                }
+                long seq = firstSeq;
+                for (ServerSentEvent<String> event : buffer) {
+                    if (seq++ >= fromSeq) {
+                        sink.next(event);
+                    }
+                }
+                if (terminated) {
+                    if (error != null) {
+                        sink.error(error);
+                    } else {
+                        sink.complete();
+                    }
+                    return;
+                }
+                if (sink.isCancelled()) {
+                    return;
+                }
+                subscribers.add(sink);
+                cancelGraceTimer();
+            }
+        });
+    }
+
+    /**
+     * 订阅者断开，最后一个订阅者断开时开始宽限期计时
+     */
+    private synchronized void detach(FluxSink<ServerSentEvent<String>> sink) {
+        if (subscribers.remove(sink) && subscribers.isEmpty() && !terminated) {
+            log.info("生成流客户端已断开，等待重连，runId: {}，appId: {}", runId, appId);
+            graceTimer = manager.scheduleGrace(this::cancelIfDetached);
+        }
+    }
+
+    /**
+     * 宽限期结束仍无订阅者时取消生成（取消信号沿生成流向上传递，终止模型请求和构建）
+     */
+    private void cancelIfDetached() {
+        Disposable toCancel;
+        synchronized (this) {
+            if (terminated || !subscribers.isEmpty() || upstream == null) {
+                return;
+            }
+            toCancel = upstream;
+        }
+        log.info("客户端断开后未重连，取消生成，runId: {}，appId: {}", runId, appId);
+        toCancel.dispose();
+    }
+
+    private void append(ServerSentEvent<String> source) {
+        // 生成流的事件按顺序到达，写入 Redis 不持有锁，不阻塞订阅者的回放
+        if (spillEnabled && buffer.size() >= capacity) {
+            spillOldest();
+        }
+        synchronized (this) {
+            if (buffer.size() >= capacity) {
+                buffer.pollFirst();
+                firstSeq++;
+            }
+            ServerSentEvent<String> event = ServerSentEvent.<String>builder()
+                    .id(runId + ":" + nextSeq++)
+                    .event(source.event())
+                    .data(source.data())
+                    .build();
+            buffer.addLast(event);
+            for (FluxSink<ServerSentEvent<String>> subscriber : subscribers) {
+                subscriber.next(event);
+            }
+        }
+    }
+
+    private void spillOldest() {
+        List<ServerSentEvent<String>> batch;
+        synchronized (this) {
+            int count = Math.min(manager.getSpillBatchSize(), buffer.size());
+            batch = new ArrayList<>(count);
+            Iterator<ServerSentEvent<String>> iterator = buffer.iterator();
+            for (int i = 0; i < count; i++) {
+                batch.add(iterator.next());
+            }
+        }
+        boolean spilled = manager.spill(runId, batch);
+        synchronized (this) {
+            if (!spilled) {
+                // 之后移出的事件不再可回放，保持 Redis 中的事件连续
+                spillEnabled = false;
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                buffer.pollFirst();
+            }
+            firstSeq += batch.size();
+            spilledCount += batch.size();
+        }
+    }
+
+    private void complete() {
+        for (FluxSink<ServerSentEvent<String>> subscriber : terminate(null)) {
+            subscriber.complete();
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        for (FluxSink<ServerSentEvent<String>> subscriber : terminate(throwable)) {
+            subscriber.error(throwable);
+        }
+    }
+
+    private synchronized List<FluxSink<ServerSentEvent<String>>> terminate(Throwable throwable) {
+        terminated = true;
+        error = throwable;
+        cancelGraceTimer();
+        List<FluxSink<ServerSentEvent<String>>> toNotify = new ArrayList<>(subscribers);
+        subscribers.clear();
+        return toNotify;
+    }
+
+    private void cancelGraceTimer() {
+        if (graceTimer != null) {
+            graceTimer.cancel(false);
+            graceTimer = null;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.codemother.core.run;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可续传的生成运行管理器
+ * 每次生成创建一个运行（{@link GenerationRun}），生成流在后台独立运行，客户端连接断开后可携带 Last-Event-ID 重连，
+ * 从断点回放已产生的事件并继续接收，不必重新生成；断开超过宽限期仍未重连时才取消生成。
+ * 运行保存在本实例内存中（续传需路由到同一实例），结束后保留一段时间以便回放；超出内存缓冲区的事件可写入 Redis 列表。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class GenerationRunManager {
+
+    private static final String SPILL_KEY_PREFIX = "gen_run:";
+
+    /**
+     * Redis 中事件列表的过期时间，运行移除时主动删除，过期时间兜底
+     */
+    private static final Duration SPILL_TTL = Duration.ofHours(1);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 每次运行在内存中保留的事件数
+     */
+    @Value("${generation-run.buffer-size:1000}")
+    private int bufferSize;
+
+    /**
+     * 缓冲区满时是否将最旧的事件写入 Redis，关闭时直接丢弃（断开过久的客户端无法续传）
+     */
+    @Value("${generation-run.redis-spill.enabled:true}")
+    private boolean spillEnabled;
+
+    /**
+     * 每次写入 Redis 的事件数
+     */
+    @Value("${generation-run.redis-spill.batch-size:200}")
+    private int spillBatchSize;
+
+    /**
+     * 所有客户端断开后等待重连的时间（秒），超时取消生成
+     */
+    @Value("${generation-run.reconnect-grace-seconds:30}")
+    private long reconnectGraceSeconds;
+
+    /**
+     * 运行结束后保留以供回放的时间（秒）
+     */
+    @Value("${generation-run.retention-seconds:300}")
+    private long retentionSeconds;
+
+    private final Map<String, GenerationRun> runs = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService timer;
+
+    private Counter resumedCounter;
+
+    @PostConstruct
+    public void init() {
+        bufferSize = Math.max(bufferSize, 10);
+        spillBatchSize = Math.max(1, Math.min(spillBatchSize, bufferSize / 2));
+        timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("generation-run-timer").daemon().factory());
+        Gauge.builder("generation.run.active", runs, Map::size)
+                .description("内存中的生成运行数（含结束后保留回放的运行）")
+                .register(meterRegistry);
+        resumedCounter = Counter.builder("generation.run.resumed")
+                .description("断线后续传的生成流次数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * 创建运行并在后台开始生成
+     *
+     * @param userId      用户 id
+     * @param appId       应用 id
+     * @param events      生成流
+     * @param onTerminate 生成结束、出错或取消时执行
+     * @return 首个客户端的事件流
+     */
+    public Flux<ServerSentEvent<String>> start(long userId, long appId, Flux<ServerSentEvent<String>> events,
+                                               Runnable onTerminate) {
+        String runId = IdUtil.fastSimpleUUID();
+        GenerationRun run = new GenerationRun(runId, userId, appId, bufferSize, spillEnabled, this);
+        runs.put(runId, run);
+        run.start(events, onTerminate);
+        return run.subscribe(0);
+    }
+
+    /**
+     * 续传：从 Last-Event-ID 之后回放并继续接收
+     *
+     * @param userId      用户 id
+     * @param appId       应用 id，为 null 时不校验
+     * @param lastEventId 客户端最后收到的事件 id
+     * @return 事件流
+     */
+    public Flux<ServerSentEvent<String>> resume(long userId, Long appId, String lastEventId) {
+        int separator = StrUtil.isBlank(lastEventId) ? -1 : lastEventId.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "事件 id 无效");
+        }
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "事件 id 无效");
+        }
+        GenerationRun run = runs.get(lastEventId.substring(0, separator));
+        if (run == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "生成已结束或已过期，请刷新后查看生成结果");
+        }
+        if (run.getUserId() != userId) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR);
+        }
+        if (appId != null && run.getAppId() != appId) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "事件 id 与应用不匹配");
+        }
+        resumedCounter.increment();
+        log.info("续传生成流，runId: {}，从序号 {} 之后开始", run.getRunId(), lastSeq);
+        return run.subscribe(lastSeq + 1);
+    }
+
+    int getSpillBatchSize() {
+        return spillBatchSize;
+    }
+
+    ScheduledFuture<?> scheduleGrace(Runnable action) {
+        return timer.schedule(action, reconnectGraceSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 运行结束后保留一段时间再移除
+     */
+    void onFinished(GenerationRun run) {
+        timer.schedule(() -> {
+            runs.remove(run.getRunId());
+            try {
+                stringRedisTemplate.delete(SPILL_KEY_PREFIX + run.getRunId());
+            } catch (Exception e) {
+                log.warn("删除生成事件失败: {}, 错误信息: {}", run.getRunId(), e.getMessage());
+            }
+        }, retentionSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 追加写入移出缓冲区的事件（列表下标即事件序号）
+     *
+     * @return 是否写入成功
+     */
+    boolean spill(String runId, List<ServerSentEvent<String>> events) {
+        List<String> values = new ArrayList<>(events.size());
+        for (ServerSentEvent<String> event : events) {
+            JSONObject json = new JSONObject();
+            json.set("e", event.event());
+            json.set("d", event.data());
+            values.add(json.toString());
+        }
+        String key = SPILL_KEY_PREFIX + runId;
+        try {
+            stringRedisTemplate.opsForList().rightPushAll(key, values);
+            stringRedisTemplate.expire(key, SPILL_TTL);
+            return true;
+        } catch (Exception e) {
+            log.warn("生成事件写入 Redis 失败: {}, 错误信息: {}", runId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 读取已写入 Redis 的事件
+     *
+     * @param fromSeq 起始序号
+     * @param toSeq   结束序号（含）
+     * @return 事件，读取失败时返回空列表
+     */
+    List<ServerSentEvent<String>> readSpilled(String runId, long fromSeq, long toSeq) {
+        List<String> values;
+        try {
+            values = stringRedisTemplate.opsForList().range(SPILL_KEY_PREFIX + runId, fromSeq, toSeq);
+        } catch (Exception e) {
+            log.warn("读取生成事件失败: {}, 错误信息: {}", runId, e.getMessage());
+            return List.of();
+        }
+        if (values == null) {
+            return List.of();
+        }
+        List<ServerSentEvent<String>> events = new ArrayList<>(values.size());
+        long seq = fromSeq;
+        for (String value : values) {
+            JSONObject json = JSONUtil.parseObj(value);
+            events.add(ServerSentEvent.<String>builder()
+                    .id(runId + ":" + seq++)
+                    .event(json.getStr("e"))
+                    .data(json.getStr("d"))
+                    .build());
+        }
+        return events;
+    }
+}
@@ -36,4 +36,36 @@ public class CodeFileSaverExecutor {
         };
     }
 
+    /**
+     * 执行单个代码块保存（流式解析时使用）
+     *
+     * @param language    代码块语言
+     * @param code        代码内容
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 保存的目录
+     */
+    public static File executeBlockSaver(String language, String code, CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.saveCodeBlock(language, code, appId);
+            case MULTI_FILE -> multiFileCodeFileSaver.saveCodeBlock(language, code, appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
+
+    /**
+     * 创建流式代码文件保存器（边生成边写入临时文件，代码块完成后原子重命名）
+     *
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 流式保存器
+     */
+    public static StreamingCodeFileSaver createStreamingSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML -> new StreamingCodeFileSaver(htmlCodeFileSaver, appId);
+            case MULTI_FILE -> new StreamingCodeFileSaver(multiFileCodeFileSaver, appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
+
 }
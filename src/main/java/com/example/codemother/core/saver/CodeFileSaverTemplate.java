@@ -7,9 +7,19 @@ import com.example.codemother.constant.AppConstant;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.model.enums.CodeGenTypeEnum;
+import com.example.codemother.utils.ProjectArchiveCache;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 抽象代码文件保存器 - 模板方法模式
@@ -42,6 +52,24 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存单个代码块（流式解析时代码块闭合即落盘，无需等待整个响应结束）
+     *
+     * @param language 代码块语言
+     * @param code     代码内容
+     * @param appId    应用 ID
+     * @return 保存的目录
+     */
+    public final File saveCodeBlock(String language, String code, Long appId) {
+        String fileName = getFileName(language);
+        if (fileName == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码块语言: " + language);
+        }
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, fileName, code);
+        return new File(baseDirPath);
+    }
+
     /**
      * 构建基于 appId 的目录路径
      *
@@ -72,7 +100,7 @@ public abstract class CodeFileSaverTemplate<T> {
     }
 
     /**
-     * 写入单个文件的工具方法
+     * 写入单个文件的工具方法（先写临时文件再原子重命名，读取方不会看到写了一半的文件）
      *
      * @param dirPath  目录路径
      * @param filename 文件名
@@ -80,9 +108,52 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     protected final void writeToFile(String dirPath, String filename, String content) {
         if (StrUtil.isNotBlank(content)) {
-            String filePath = dirPath + File.separator + filename;
-            FileUtil.writeString(content, filePath, StandardCharsets.UTF_8);
+            Path targetPath = Paths.get(dirPath, filename);
+            Path tempPath = buildTempPath(targetPath);
+            try {
+                try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    writeFully(channel, StandardCharsets.UTF_8.encode(content));
+                    channel.force(true);
+                }
+                moveAtomically(tempPath, targetPath);
+            } catch (IOException e) {
+                FileUtil.del(tempPath);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件写入失败: " + filename);
+            }
+        }
+    }
+
+    /**
+     * 构建与目标文件同目录的临时文件路径（同一文件系统才能原子重命名，.tmp 后缀在下载时会被过滤）
+     *
+     * @param targetPath 目标文件路径
+     * @return 临时文件路径
+     */
+    static Path buildTempPath(Path targetPath) {
+        String tempName = StrUtil.format(".{}.{}.tmp", targetPath.getFileName(), IdUtil.fastSimpleUUID());
+        return targetPath.resolveSibling(tempName);
+    }
+
+    /**
+     * 将缓冲区完整写入通道
+     */
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 原子重命名，文件系统不支持时退化为普通替换
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
+        // 生成目录内容变化，失效下载压缩包缓存
+        ProjectArchiveCache.invalidate(target);
     }
 
     /**
@@ -92,6 +163,14 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     protected abstract CodeGenTypeEnum getCodeType();
 
+    /**
+     * 获取代码块语言对应的文件名（由子类实现）
+     *
+     * @param language 代码块语言（html / css / js）
+     * @return 文件名，不支持的语言返回 null
+     */
+    protected abstract String getFileName(String language);
+
     /**
      * 保存文件的具体实现（由子类实现）
      *
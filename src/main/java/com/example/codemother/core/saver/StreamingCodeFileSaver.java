@@ -0,0 +1,174 @@
+package com.example.codemother.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import com.example.codemother.core.parser.CodeBlockListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 流式代码文件保存器
+ * 代码块开始时在 {codeType}_{appId} 目录下创建临时文件，增量内容通过 FileChannel 追加写入，
+ * 代码块完成时刷盘并原子重命名为正式文件，预览、部署和下载不会读到写了一半的文件。
+ * 流式解析器按顺序解析代码块，同一时刻最多只有一个临时文件处于打开状态。
+ *
+ * @author kkoma
+ */
+@Slf4j
+public class StreamingCodeFileSaver implements CodeBlockListener {
+
+    private final CodeFileSaverTemplate<?> saverTemplate;
+
+    private final Long appId;
+
+    /**
+     * 当前正在写入的代码块语言
+     */
+    private String currentLanguage;
+
+    private FileChannel currentChannel;
+
+    private Path currentTempPath;
+
+    private Path currentTargetPath;
+
+    /**
+     * 上一个增量末尾未配对的高代理字符，与下一个增量拼接后再编码，避免 emoji 等字符被截断
+     */
+    private String pendingHighSurrogate = "";
+
+    /**
+     * 临时文件写入失败，代码块完成时改用整体写入兜底
+     */
+    private boolean currentFailed;
+
+    public StreamingCodeFileSaver(CodeFileSaverTemplate<?> saverTemplate, Long appId) {
+        this.saverTemplate = saverTemplate;
+        this.appId = appId;
+    }
+
+    @Override
+    public void onBlockStart(String language) {
+        discardCurrent();
+        String fileName = saverTemplate.getFileName(language);
+        if (fileName == null) {
+            return;
+        }
+        currentLanguage = language;
+        currentFailed = false;
+        try {
+            String baseDirPath = saverTemplate.buildUniqueDir(appId);
+            currentTargetPath = Paths.get(baseDirPath, fileName);
+            currentTempPath = CodeFileSaverTemplate.buildTempPath(currentTargetPath);
+            currentChannel = FileChannel.open(currentTempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (Exception e) {
+            log.error("创建临时文件失败，代码块 {} 将在完成后整体写入: {}", language, e.getMessage());
+            failCurrent();
+        }
+    }
+
+    @Override
+    public void onBlockContent(String language, String content) {
+        if (currentChannel == null || !language.equals(currentLanguage)) {
+            return;
+        }
+        String text = pendingHighSurrogate + content;
+        pendingHighSurrogate = "";
+        if (Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            pendingHighSurrogate = text.substring(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+        try {
+            CodeFileSaverTemplate.writeFully(currentChannel, StandardCharsets.UTF_8.encode(text));
+        } catch (IOException e) {
+            log.error("追加写入临时文件失败，代码块 {} 将在完成后整体写入: {}", language, e.getMessage());
+            failCurrent();
+        }
+    }
+
+    @Override
+    public void onBlockDiscard(String language) {
+        if (language.equals(currentLanguage)) {
+            discardCurrent();
+        }
+    }
+
+    @Override
+    public void onBlockComplete(String language, String code) {
+        if (!language.equals(currentLanguage)) {
+            return;
+        }
+        if (currentFailed) {
+            discardCurrent();
+            saveWholeBlock(language, code);
+            return;
+        }
+        try {
+            if (!pendingHighSurrogate.isEmpty()) {
+                CodeFileSaverTemplate.writeFully(currentChannel, StandardCharsets.UTF_8.encode(pendingHighSurrogate));
+            }
+            // 刷盘后再重命名，保证重命名后的文件内容完整
+            currentChannel.force(true);
+            currentChannel.close();
+            CodeFileSaverTemplate.moveAtomically(currentTempPath, currentTargetPath);
+            log.info("代码块 {} 流式保存成功，路径为：{}", language, currentTargetPath);
+            resetCurrent();
+        } catch (IOException e) {
+            log.error("提交临时文件失败，代码块 {} 改为整体写入: {}", language, e.getMessage());
+            discardCurrent();
+            saveWholeBlock(language, code);
+        }
+    }
+
+    /**
+     * 兜底：整体写入代码块，失败只记录日志，不中断流
+     */
+    private void saveWholeBlock(String language, String code) {
+        try {
+            saverTemplate.saveCodeBlock(language, code, appId);
+        } catch (Exception e) {
+            log.error("代码块 {} 保存失败: {}", language, e.getMessage());
+        }
+    }
+
+    /**
+     * 标记当前代码块写入失败，并清理临时文件
+     */
+    private void failCurrent() {
+        String language = currentLanguage;
+        discardCurrent();
+        currentLanguage = language;
+        currentFailed = true;
+    }
+
+    /**
+     * 关闭并删除当前临时文件
+     */
+    private void discardCurrent() {
+        if (currentChannel != null) {
+            try {
+                currentChannel.close();
+            } catch (IOException e) {
+                log.warn("关闭临时文件失败: {}", e.getMessage());
+            }
+        }
+        if (currentTempPath != null) {
+            FileUtil.del(currentTempPath);
+        }
+        resetCurrent();
+    }
+
+    private void resetCurrent() {
+        currentLanguage = null;
+        currentChannel = null;
+        currentTempPath = null;
+        currentTargetPath = null;
+        pendingHighSurrogate = "";
+        currentFailed = false;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.codemother.langgraph4j;
 
 import cn.hutool.json.JSONUtil;
+import com.example.codemother.core.cancel.CancellationToken;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.langgraph4j.node.*;
@@ -138,7 +139,9 @@ public class CodeGenWorkflow {
      */
     public Flux<String> executeWorkflowWithFlux(String originalPrompt, Long appId) {
         return Flux.create(sink -> {
-            Thread.startVirtualThread(() -> {
+            // 生成被取消（下游取消订阅）时取消令牌并中断工作线程：正在进行的模型请求和构建进程随之终止，后续步骤不再执行
+            CancellationToken cancellation = new CancellationToken();
+            Thread worker = Thread.ofVirtual().unstarted(() -> CancellationToken.runWith(cancellation, () -> {
                 try {
                     CompiledGraph<MessagesState<String>> workflow = createWorkflow();
                     WorkflowContext initialContext = WorkflowContext.builder()
@@ -157,6 +160,10 @@ public class CodeGenWorkflow {
                     int stepCounter = 1;
                     for (NodeOutput<MessagesState<String>> step : workflow.stream(
                             Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext))) {
+                        if (cancellation.isCancelled()) {
+                            log.info("工作流已取消，appId: {}", appId);
+                            return;
+                        }
                         log.info("--- 第 {} 步完成 ---", stepCounter);
                         WorkflowContext currentContext = WorkflowContext.getContext(step.state());
                         if (currentContext != null) {
@@ -169,6 +176,10 @@ public class CodeGenWorkflow {
                         }
                         stepCounter++;
                     }
+                    if (cancellation.isCancelled()) {
+                        log.info("工作流已取消，appId: {}", appId);
+                        return;
+                    }
                     sink.next(formatSseEvent("workflow_completed", Map.of(
                             "message", "代码生成工作流执行完成！",
                             "appId", appId
@@ -176,6 +187,10 @@ public class CodeGenWorkflow {
                     log.info("代码生成工作流执行完成！");
                     sink.complete();
                 } catch (Exception e) {
+                    if (cancellation.isCancelled()) {
+                        log.info("工作流已取消，appId: {}", appId);
+                        return;
+                    }
                     log.error("工作流执行失败: {}", e.getMessage(), e);
                     sink.next(formatSseEvent("workflow_error", Map.of(
                             "error", e.getMessage(),
@@ -184,7 +199,12 @@ public class CodeGenWorkflow {
                     )));
                     sink.error(e);
                 }
+            }));
+            sink.onCancel(() -> {
+                cancellation.cancel();
+                worker.interrupt();
             });
+            worker.start();
         });
     }
 
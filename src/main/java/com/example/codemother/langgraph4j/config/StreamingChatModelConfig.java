@@ -1,5 +1,6 @@
 package com.example.codemother.langgraph4j.config;
 
+import com.example.codemother.core.cancel.CancellableHttpClient;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.Data;
@@ -32,6 +33,8 @@ public class StreamingChatModelConfig {
     @Scope("prototype")
     public StreamingChatModel streamingChatModelPrototype() {
         return OpenAiStreamingChatModel.builder()
+                // 生成被取消时关闭模型响应流
+                .httpClientBuilder(new CancellableHttpClient.Builder())
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .modelName(modelName)
@@ -2,6 +2,7 @@ package com.example.codemother.manager;
 
 import com.example.codemother.config.CosClientConfig;
 import com.qcloud.cos.COSClient;
+import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.PutObjectResult;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.context.annotation.Profile;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
 /**
@@ -59,4 +61,41 @@ public class CosManager {
             return null;
         }
     }
+
+    /**
+     * 上传内存中的数据
+     *
+     * @param key         唯一键
+     * @param bytes       数据
+     * @param contentType 内容类型
+     * @return 上传结果
+     */
+    public PutObjectResult putObject(String key, byte[] bytes, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(bytes.length);
+        metadata.setContentType(contentType);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                new ByteArrayInputStream(bytes), metadata);
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 上传内存中的数据到 COS 并返回访问 URL（无需落盘）
+     *
+     * @param key         COS对象键（完整路径）
+     * @param bytes       数据
+     * @param contentType 内容类型
+     * @return 文件的访问URL，失败返回null
+     */
+    public String uploadBytes(String key, byte[] bytes, String contentType) {
+        PutObjectResult result = putObject(key, bytes, contentType);
+        if (result != null) {
+            String url = String.format("%s%s", cosClientConfig.getHost(), key);
+            log.info("数据上传COS成功: {} 字节 -> {}", bytes.length, url);
+            return url;
+        } else {
+            log.error("数据上传COS失败，返回结果为空");
+            return null;
+        }
+    }
 }
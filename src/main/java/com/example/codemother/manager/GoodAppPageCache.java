@@ -0,0 +1,205 @@
+package com.example.codemother.manager;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.codemother.model.dto.App.AppQueryRequest;
+import com.example.codemother.model.vo.AppVO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mybatisflex.core.paginate.Page;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 精选应用分页缓存（两级）
+ * L1 为本实例堆内 Caffeine 缓存，L2 为 Redis 哈希（字段为查询条件，值为 JSON），首页精选列表绝大多数请求直接由堆内返回。
+ * 精选应用变化时删除 L2 并通过 Redis 发布订阅通知所有实例清空 L1；消息丢失时由 L1 的短 TTL 兜底。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class GoodAppPageCache {
+
+    private static final String CACHE_NAME = "good_app_page";
+
+    private static final String INVALIDATE_CHANNEL = CACHE_NAME + ":invalidate";
+
+    /**
+     * 查询条件拼接后超过该长度时取摘要作为键
+     */
+    private static final int MAX_RAW_KEY_LENGTH = 128;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * L1 过期时间（秒）
+     */
+    @Value("${good-app-cache.local.ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    /**
+     * L1 最大条目数
+     */
+    @Value("${good-app-cache.local.max-size:1000}")
+    private long localMaxSize;
+
+    /**
+     * L2 过期时间（分钟），兜底未广播的修改（如应用名称变更）
+     */
+    @Value("${good-app-cache.redis.ttl-minutes:5}")
+    private long redisTtlMinutes;
+
+    /**
+     * L2 值编解码：只包含分页数据本身，不写入类型信息
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /**
+     * 失效次数，加载期间发生失效时不回填，避免写回旧数据
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Cache<String, Page<AppVO>> localCache;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, CACHE_NAME);
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> invalidateLocal(),
+                new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * L2 中保存的分页数据
+     */
+    private record CachedPage(long pageNumber, long pageSize, long totalRow, List<AppVO> records) {
+    }
+
+    /**
+     * 获取精选应用分页，L1、L2 均未命中时调用 loader 查询并回填
+     *
+     * @param appQueryRequest 查询请求
+     * @param loader          查询数据库
+     * @return 分页结果（共享对象，调用方不得修改）
+     */
+    public Page<AppVO> get(AppQueryRequest appQueryRequest, Supplier<Page<AppVO>> loader) {
+        String key = buildKey(appQueryRequest);
+        long version = invalidations.get();
+        Page<AppVO> page = localCache.get(key, k -> load(k, version, loader));
+        if (invalidations.get() != version) {
+            localCache.invalidate(key);
+        }
+        return page;
+    }
+
+    /**
+     * 精选应用发生变化：删除 L2 并广播清空各实例的 L1
+     */
+    public void invalidateAll() {
+        invalidateLocal();
+        try {
+            stringRedisTemplate.delete(CACHE_NAME);
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, "all");
+        } catch (Exception e) {
+            log.warn("精选应用缓存失效广播失败，其他实例将在本地缓存过期后刷新: {}", e.getMessage());
+        }
+    }
+
+    private void invalidateLocal() {
+        invalidations.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    private Page<AppVO> load(String key, long version, Supplier<Page<AppVO>> loader) {
+        Page<AppVO> cached = readRemote(key);
+        if (cached != null) {
+            return cached;
+        }
+        Page<AppVO> page = loader.get();
+        if (invalidations.get() == version) {
+            writeRemote(key, page);
+        }
+        return page;
+    }
+
+    private Page<AppVO> readRemote(String key) {
+        try {
+            Object json = stringRedisTemplate.opsForHash().get(CACHE_NAME, key);
+            if (json == null) {
+                return null;
+            }
+            CachedPage cachedPage = objectMapper.readValue(json.toString(), CachedPage.class);
+            Page<AppVO> page = new Page<>(cachedPage.pageNumber(), cachedPage.pageSize(), cachedPage.totalRow());
+            page.setRecords(cachedPage.records());
+            return page;
+        } catch (Exception e) {
+            // Redis 不可用或格式不兼容时直接查库
+            log.warn("读取精选应用缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRemote(String key, Page<AppVO> page) {
+        try {
+            CachedPage cachedPage = new CachedPage(page.getPageNumber(), page.getPageSize(), page.getTotalRow(),
+                    page.getRecords());
+            stringRedisTemplate.opsForHash().put(CACHE_NAME, key, objectMapper.writeValueAsString(cachedPage));
+            // 整个哈希按首次写入计时过期，不随后续写入续期
+            Long ttl = stringRedisTemplate.getExpire(CACHE_NAME, TimeUnit.SECONDS);
+            if (ttl == null || ttl < 0) {
+                stringRedisTemplate.expire(CACHE_NAME, Duration.ofMinutes(redisTtlMinutes));
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("精选应用缓存序列化失败: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("写入精选应用缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按查询条件拼接缓存键，不再每次序列化整个请求并计算 MD5
+     */
+    private String buildKey(AppQueryRequest request) {
+        String key = StrUtil.join("|", request.getPageNum(), request.getPageSize(),
+                StrUtil.nullToEmpty(request.getSortField()), StrUtil.nullToEmpty(request.getSortOrder()),
+                request.getId() == null ? "" : request.getId(), StrUtil.nullToEmpty(request.getAppName()),
+                StrUtil.nullToEmpty(request.getCover()), StrUtil.nullToEmpty(request.getInitPrompt()),
+                StrUtil.nullToEmpty(request.getCodeGenType()), StrUtil.nullToEmpty(request.getDeployKey()),
+                request.getUserId() == null ? "" : request.getUserId());
+        return key.length() <= MAX_RAW_KEY_LENGTH ? key : DigestUtil.md5Hex(key);
+    }
+}
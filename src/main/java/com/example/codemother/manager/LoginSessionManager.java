@@ -0,0 +1,280 @@
+package com.example.codemother.manager;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.codemother.model.entity.User;
+import com.example.codemother.model.enums.UserRoleEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * 登录会话管理
+ * 登录态不再放在 Servlet HttpSession 中，而是以随机令牌（Cookie）为键，在 Redis 中保存紧凑的二进制主体（用户 id、角色、会话代数），
+ * 任意实例都能识别同一会话；访问时滑动续期，本地近端缓存短时间复用已校验的主体，减少 Redis 往返。
+ * 用户角色变更或被删除时递增会话代数，该用户已有的会话全部失效。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class LoginSessionManager {
+
+    private static final String SESSION_KEY_PREFIX = "login:session:";
+
+    private static final String GENERATION_KEY_PREFIX = "login:generation:";
+
+    /**
+     * 主体编码格式版本，格式变化时旧会话按未登录处理
+     */
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * 编码后长度：格式版本(1) + 用户 id(8) + 角色(1) + 会话代数(4)
+     */
+    private static final int ENCODED_LENGTH = 14;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 会话 Cookie 名
+     */
+    @Value("${login-session.cookie-name:CM_SESSION}")
+    private String cookieName;
+
+    /**
+     * 会话 Cookie 是否仅通过 HTTPS 发送
+     */
+    @Value("${login-session.cookie-secure:false}")
+    private boolean cookieSecure;
+
+    /**
+     * 会话空闲过期时间（分钟），每次访问滑动续期
+     */
+    @Value("${login-session.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    /**
+     * 近端缓存过期时间（秒），也是登出或失效在其他实例上生效的最大延迟
+     */
+    @Value("${login-session.near-cache.ttl-seconds:10}")
+    private long nearCacheTtlSeconds;
+
+    /**
+     * 近端缓存的最大会话数
+     */
+    @Value("${login-session.near-cache.max-size:100000}")
+    private long nearCacheMaxSize;
+
+    private RedisTemplate<String, byte[]> sessionTemplate;
+
+    /**
+     * 近端缓存（令牌 -> 已校验的主体）
+     */
+    private Cache<String, LoginPrincipal> nearCache;
+
+    @PostConstruct
+    public void init() {
+        sessionTemplate = new RedisTemplate<>();
+        sessionTemplate.setConnectionFactory(redisConnectionFactory);
+        sessionTemplate.setKeySerializer(RedisSerializer.string());
+        sessionTemplate.setValueSerializer(RedisSerializer.byteArray());
+        sessionTemplate.afterPropertiesSet();
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(nearCacheTtlSeconds))
+                .build();
+    }
+
+    /**
+     * 登录主体
+     *
+     * @param userId     用户 id
+     * @param userRole   用户角色
+     * @param generation 创建会话时该用户的会话代数
+     */
+    public record LoginPrincipal(long userId, String userRole, int generation) {
+    }
+
+    /**
+     * 创建会话并写入会话 Cookie
+     *
+     * @param user    登录用户
+     * @param request 请求
+     */
+    public void createSession(User user, HttpServletRequest request) {
+        // 登录前已有的会话作废，防止会话固定
+        String oldToken = readToken(request);
+        if (oldToken != null) {
+            deleteSession(oldToken);
+        }
+        LoginPrincipal principal = new LoginPrincipal(user.getId(), user.getUserRole(), currentGeneration(user.getId()));
+        String token = newToken();
+        sessionTemplate.opsForValue().set(sessionKey(token), encode(principal), Duration.ofMinutes(ttlMinutes));
+        nearCache.put(token, principal);
+        writeCookie(request, token, Duration.ofSeconds(-1));
+    }
+
+    /**
+     * 解析当前请求的登录主体，Redis 中的会话同时滑动续期
+     *
+     * @param request 请求
+     * @return 登录主体，未登录或会话失效时返回 null
+     */
+    public LoginPrincipal resolve(HttpServletRequest request) {
+        String token = readToken(request);
+        if (token == null) {
+            return null;
+        }
+        LoginPrincipal cached = nearCache.getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] encoded = sessionTemplate.opsForValue().getAndExpire(sessionKey(token), Duration.ofMinutes(ttlMinutes));
+        LoginPrincipal principal = decode(encoded);
+        if (principal == null) {
+            return null;
+        }
+        if (principal.generation() != currentGeneration(principal.userId())) {
+            // 角色变更或用户被删除后的旧会话
+            deleteSession(token);
+            return null;
+        }
+        nearCache.put(token, principal);
+        return principal;
+    }
+
+    /**
+     * 销毁当前请求的会话并清除 Cookie
+     *
+     * @param request 请求
+     * @return 是否存在会话
+     */
+    public boolean removeSession(HttpServletRequest request) {
+        String token = readToken(request);
+        if (token == null) {
+            return false;
+        }
+        boolean existed = nearCache.getIfPresent(token) != null
+                || Boolean.TRUE.equals(sessionTemplate.hasKey(sessionKey(token)));
+        deleteSession(token);
+        writeCookie(request, "", Duration.ZERO);
+        return existed;
+    }
+
+    /**
+     * 使用户已有的全部会话失效（角色变更、用户删除）
+     *
+     * @param userId 用户 id
+     */
+    public void invalidateUserSessions(long userId) {
+        stringRedisTemplate.opsForValue().increment(GENERATION_KEY_PREFIX + userId);
+        nearCache.asMap().values().removeIf(principal -> principal.userId() == userId);
+    }
+
+    private int currentGeneration(long userId) {
+        String generation = stringRedisTemplate.opsForValue().get(GENERATION_KEY_PREFIX + userId);
+        return generation == null ? 0 : Integer.parseInt(generation);
+    }
+
+    private void deleteSession(String token) {
+        nearCache.invalidate(token);
+        sessionTemplate.delete(sessionKey(token));
+    }
+
+    private String sessionKey(String token) {
+        return SESSION_KEY_PREFIX + token;
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private String readToken(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName()) && StrUtil.isNotBlank(cookie.getValue())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 写入会话 Cookie，maxAge 为负数时为浏览器会话 Cookie
+     */
+    private void writeCookie(HttpServletRequest request, String token, Duration maxAge) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getResponse() == null) {
+            log.warn("无法获取当前响应，会话 Cookie 未写入");
+            return;
+        }
+        HttpServletResponse response = attributes.getResponse();
+        String path = StrUtil.blankToDefault(request.getContextPath(), "/");
+        ResponseCookie cookie = ResponseCookie.from(cookieName, token)
+                .httpOnly(true)
+                .secure(cookieSecure)
+                .sameSite("Lax")
+                .path(path)
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private static byte[] encode(LoginPrincipal principal) {
+        UserRoleEnum role = UserRoleEnum.getEnumByValue(principal.userRole());
+        return ByteBuffer.allocate(ENCODED_LENGTH)
+                .put(FORMAT_VERSION)
+                .putLong(principal.userId())
+                .put((byte) (role == null ? UserRoleEnum.USER.ordinal() : role.ordinal()))
+                .putInt(principal.generation())
+                .array();
+    }
+
+    private static LoginPrincipal decode(byte[] encoded) {
+        if (encoded == null || encoded.length != ENCODED_LENGTH || encoded[0] != FORMAT_VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encoded, 1, ENCODED_LENGTH - 1);
+        long userId = buffer.getLong();
+        int roleOrdinal = buffer.get();
+        int generation = buffer.getInt();
+        UserRoleEnum[] roles = UserRoleEnum.values();
+        if (roleOrdinal < 0 || roleOrdinal >= roles.length) {
+            return null;
+        }
+        return new LoginPrincipal(userId, roles[roleOrdinal].getValue(), generation);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.codemother.mapper;
+
+import com.example.codemother.model.entity.ChatHistoryArchive;
+import com.mybatisflex.core.BaseMapper;
+
+/**
+ * 对话历史归档 映射层。
+ *
+ * @author kkoma
+ */
+public interface ChatHistoryArchiveMapper extends BaseMapper<ChatHistoryArchive> {
+
+}
@@ -45,5 +45,10 @@ public class ChatHistoryQueryRequest extends PageRequest implements Serializable
      */
     private LocalDateTime lastCreateTime;
 
+    /**
+     * 游标查询 - 上一页返回的 nextCursor（优先于 lastCreateTime）
+     */
+    private String cursor;
+
     private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,90 @@
+package com.example.codemother.model.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 对话历史归档段 实体类。
+ * 一段为同一应用连续的若干条对话历史，序列化为 JSON 数组后压缩存储。
+ *
+ * @author kkoma
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("chat_history_archive")
+public class ChatHistoryArchive implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id（自增，同一应用的归档段按 id 递增即按时间递增）
+     */
+    @Id(keyType = KeyType.Auto)
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    @Column("appId")
+    private Long appId;
+
+    /**
+     * 段内最早消息id
+     */
+    @Column("firstId")
+    private Long firstId;
+
+    /**
+     * 段内最新消息id
+     */
+    @Column("lastId")
+    private Long lastId;
+
+    /**
+     * 段内最早消息创建时间
+     */
+    @Column("firstCreateTime")
+    private LocalDateTime firstCreateTime;
+
+    /**
+     * 段内最新消息创建时间
+     */
+    @Column("lastCreateTime")
+    private LocalDateTime lastCreateTime;
+
+    /**
+     * 消息条数
+     */
+    @Column("messageCount")
+    private Integer messageCount;
+
+    /**
+     * 压缩算法
+     */
+    private String codec;
+
+    /**
+     * 压缩后的消息
+     */
+    private byte[] content;
+
+    /**
+     * 归档时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+
+}
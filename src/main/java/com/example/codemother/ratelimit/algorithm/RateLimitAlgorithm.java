@@ -0,0 +1,27 @@
+package com.example.codemother.ratelimit.algorithm;
+
+import com.example.codemother.ratelimit.enums.RateLimitAlgorithmType;
+
+/**
+ * 全局限流算法（所有实例共享的计数），本地许可池从这里批量租借许可
+ *
+ * @author kkoma
+ */
+public interface RateLimitAlgorithm {
+
+    /**
+     * 算法类型
+     */
+    RateLimitAlgorithmType getType();
+
+    /**
+     * 尝试一次性获取多个许可
+     *
+     * @param key             限流键
+     * @param rate            每个时间窗口允许的请求数
+     * @param intervalSeconds 时间窗口（秒）
+     * @param permits         许可数
+     * @return 是否全部获取成功（不会只获取一部分）
+     */
+    boolean tryAcquire(String key, long rate, long intervalSeconds, int permits);
+}
@@ -0,0 +1,57 @@
+package com.example.codemother.ratelimit.algorithm;
+
+import com.example.codemother.ratelimit.enums.RateLimitAlgorithmType;
+import jakarta.annotation.Resource;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 滑动窗口算法（Redis 有序集合，成员为许可，分值为获取时间）
+ * 清理窗口外的记录、计数和写入在一个 Lua 脚本内完成，一次往返；时间取 Redis 服务器时间，不受各实例时钟偏差影响。
+ *
+ * @author kkoma
+ */
+@Component
+@Profile("prod")
+public class SlidingWindowRateLimitAlgorithm implements RateLimitAlgorithm {
+
+    private static final String SCRIPT = """
+            local t = redis.call('TIME')
+            local now = tonumber(t[1]) * 1000000 + tonumber(t[2])
+            local window = tonumber(ARGV[2]) * 1000000
+            local permits = tonumber(ARGV[3])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now - window)
+            if redis.call('ZCARD', KEYS[1]) + permits > tonumber(ARGV[1]) then
+                return 0
+            end
+            local seq = redis.call('INCRBY', KEYS[1] .. ':seq', permits)
+            for i = 1, permits do
+                redis.call('ZADD', KEYS[1], now, seq - i)
+            end
+            redis.call('PEXPIRE', KEYS[1], tonumber(ARGV[2]) * 1000)
+            redis.call('PEXPIRE', KEYS[1] .. ':seq', tonumber(ARGV[2]) * 1000)
+            return 1
+            """;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Override
+    public RateLimitAlgorithmType getType() {
+        return RateLimitAlgorithmType.SLIDING_WINDOW;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, long rate, long intervalSeconds, int permits) {
+        String windowKey = "{" + key + "}:window";
+        Boolean acquired = redissonClient.getScript(StringCodec.INSTANCE).eval(windowKey, RScript.Mode.READ_WRITE,
+                SCRIPT, RScript.ReturnType.BOOLEAN, List.<Object>of(windowKey),
+                String.valueOf(rate), String.valueOf(intervalSeconds), String.valueOf(permits));
+        return Boolean.TRUE.equals(acquired);
+    }
+}
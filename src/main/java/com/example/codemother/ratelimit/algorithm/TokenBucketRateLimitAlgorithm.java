@@ -0,0 +1,67 @@
+package com.example.codemother.ratelimit.algorithm;
+
+import com.example.codemother.ratelimit.enums.RateLimitAlgorithmType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.Resource;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 令牌桶算法（Redisson RRateLimiter）
+ * 每个键只在首次使用时设置速率和过期时间，之后每次获取只有一次 tryAcquire 往返。
+ *
+ * @author kkoma
+ */
+@Component
+@Profile("prod")
+public class TokenBucketRateLimitAlgorithm implements RateLimitAlgorithm {
+
+    /**
+     * Redis 中限流器的过期时间，避免长期占用内存
+     */
+    private static final Duration LIMITER_TTL = Duration.ofHours(1);
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 已初始化的限流器，早于 Redis 过期前重新初始化以续期
+     */
+    private final Cache<String, RRateLimiter> limiters = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(LIMITER_TTL.dividedBy(2))
+            .build();
+
+    @Override
+    public RateLimitAlgorithmType getType() {
+        return RateLimitAlgorithmType.TOKEN_BUCKET;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, long rate, long intervalSeconds, int permits) {
+        RRateLimiter rateLimiter = limiters.get(key, k -> initLimiter(k, rate, intervalSeconds));
+        try {
+            return rateLimiter.tryAcquire(permits);
+        } catch (RedisException e) {
+            // 限流器在 Redis 中已被淘汰，重新初始化后重试一次
+            limiters.invalidate(key);
+            rateLimiter = limiters.get(key, k -> initLimiter(k, rate, intervalSeconds));
+            return rateLimiter.tryAcquire(permits);
+        }
+    }
+
+    private RRateLimiter initLimiter(String key, long rate, long intervalSeconds) {
+        RRateLimiter rateLimiter = redissonClient.getRateLimiter(key);
+        rateLimiter.trySetRate(RateType.OVERALL, rate, intervalSeconds, RateIntervalUnit.SECONDS);
+        rateLimiter.expire(LIMITER_TTL);
+        return rateLimiter;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.codemother.ratelimit.annotation;
 
+import com.example.codemother.ratelimit.enums.RateLimitAlgorithmType;
 import com.example.codemother.ratelimit.enums.RateLimitType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -30,6 +31,11 @@ public @interface RateLimit {
      */
     RateLimitType limitType() default RateLimitType.USER;
 
+    /**
+     * 全局限流算法
+     */
+    RateLimitAlgorithmType algorithm() default RateLimitAlgorithmType.TOKEN_BUCKET;
+
     /**
      * 限流提示信息
      */
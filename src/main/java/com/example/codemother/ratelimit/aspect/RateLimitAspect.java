@@ -5,19 +5,15 @@ import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.model.entity.User;
 import com.example.codemother.ratelimit.annotation.RateLimit;
+import com.example.codemother.ratelimit.limiter.HybridRateLimiter;
 import com.example.codemother.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
-import java.time.Duration;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.redisson.api.RRateLimiter;
-import org.redisson.api.RateIntervalUnit;
-import org.redisson.api.RateType;
-import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
@@ -34,7 +30,7 @@ public class RateLimitAspect {
     private static final Logger log = LoggerFactory.getLogger(RateLimitAspect.class);
 
     @Resource
-    private RedissonClient redissonClient;
+    private HybridRateLimiter hybridRateLimiter;
 
     @Resource
     private UserService userService;
@@ -42,13 +38,8 @@ public class RateLimitAspect {
     @Before("@annotation(rateLimit)")
     public void doBefore(JoinPoint point, RateLimit rateLimit) {
         String key = generateRateLimitKey(point, rateLimit);
-        RRateLimiter rateLimiter = redissonClient.getRateLimiter(key);
-        // 设置过期，避免长期占用内存
-        rateLimiter.expire(Duration.ofHours(1));
-        // 设置限流速率：每个时间窗口允许的请求数
-        rateLimiter.trySetRate(RateType.OVERALL, rateLimit.rate(), rateLimit.rateInterval(), RateIntervalUnit.SECONDS);
-        // 尝试获取令牌
-        boolean acquired = rateLimiter.tryAcquire(1);
+        // 优先从本地许可池获取，池空时才访问 Redis
+        boolean acquired = hybridRateLimiter.tryAcquire(key, rateLimit);
         if (!acquired) {
             throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, rateLimit.message());
         }
@@ -0,0 +1,17 @@
+package com.example.codemother.ratelimit.enums;
+
+/**
+ * 全局限流算法
+ */
+public enum RateLimitAlgorithmType {
+
+    /**
+     * 令牌桶（Redisson RRateLimiter）
+     */
+    TOKEN_BUCKET,
+
+    /**
+     * 滑动窗口（Redis 有序集合）
+     */
+    SLIDING_WINDOW
+}
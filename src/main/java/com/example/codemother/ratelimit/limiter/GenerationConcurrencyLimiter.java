@@ -0,0 +1,174 @@
+package com.example.codemother.ratelimit.limiter;
+
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 代码生成并发限制
+ * 限制进行中的生成数量（单个应用、单个用户、全局三级），与按请求次数的 @RateLimit 互补：一次生成可能占用模型流、工具调用和 npm 构建数分钟。
+ * 有 Redisson 时使用 Redis 可过期许可信号量跨实例计数，许可带租期，实例宕机后到期自动归还；否则使用本实例的公平信号量。
+ * 按应用、用户、全局的顺序获取，排队中的请求不占用更大范围的名额，少数重度用户无法挤占全局容量；超过最长等待时间返回请求过多。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+public class GenerationConcurrencyLimiter {
+
+    private static final String KEY_PREFIX = "gen_concurrency:";
+
+    /**
+     * 信号量在 Redis 中的过期时间，定期重新初始化时续期
+     */
+    private static final Duration SEMAPHORE_TTL = Duration.ofDays(1);
+
+    @Autowired
+    private ObjectProvider<RedissonClient> redissonClientProvider;
+
+    @Value("${generation-limit.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 全局同时进行的生成数
+     */
+    @Value("${generation-limit.global-max:20}")
+    private int globalMax;
+
+    /**
+     * 单个用户同时进行的生成数
+     */
+    @Value("${generation-limit.per-user-max:2}")
+    private int perUserMax;
+
+    /**
+     * 单个应用同时进行的生成数
+     */
+    @Value("${generation-limit.per-app-max:1}")
+    private int perAppMax;
+
+    /**
+     * 排队的最长等待时间（秒）
+     */
+    @Value("${generation-limit.max-wait-seconds:5}")
+    private long maxWaitSeconds;
+
+    /**
+     * 许可租期（分钟），应大于单次生成的最长耗时
+     */
+    @Value("${generation-limit.lease-minutes:30}")
+    private long leaseMinutes;
+
+    /**
+     * 已初始化许可数的 Redis 信号量，过期后重新初始化以续期
+     */
+    private final Cache<String, RPermitExpirableSemaphore> redisSemaphores = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(SEMAPHORE_TTL.dividedBy(2))
+            .build();
+
+    /**
+     * 本实例信号量，持有中的许可引用信号量，不会在使用中被回收
+     */
+    private final Cache<String, Semaphore> localSemaphores = Caffeine.newBuilder()
+            .weakValues()
+            .build();
+
+    /**
+     * 生成许可，生成流结束、出错或取消时释放（可重复调用）
+     */
+    public static class GenerationPermit {
+
+        private final List<Runnable> releasers = new ArrayList<>(3);
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            for (int i = releasers.size() - 1; i >= 0; i--) {
+                try {
+                    releasers.get(i).run();
+                } catch (Exception e) {
+                    // 释放失败的许可到租期后自动归还
+                    log.warn("释放生成许可失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取生成许可，名额不足时排队等待，超时抛出请求过多
+     *
+     * @param userId 用户 id
+     * @param appId  应用 id
+     * @return 生成许可
+     */
+    public GenerationPermit acquire(long userId, long appId) {
+        GenerationPermit permit = new GenerationPermit();
+        if (!enabled) {
+            return permit;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxWaitSeconds);
+        try {
+            acquireSlot(permit, "app:" + appId, perAppMax, deadline, "该应用正在生成中，请等待当前生成完成");
+            acquireSlot(permit, "user:" + userId, perUserMax, deadline, "进行中的生成过多，请等待当前生成完成");
+            acquireSlot(permit, "global", globalMax, deadline, "当前生成人数过多，请稍后再试");
+            return permit;
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    private void acquireSlot(GenerationPermit permit, String name, int maxPermits, long deadline, String message) {
+        long waitMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        RedissonClient redissonClient = redissonClientProvider.getIfAvailable();
+        Runnable releaser;
+        try {
+            releaser = redissonClient != null
+                    ? acquireRedis(redissonClient, KEY_PREFIX + name, maxPermits, waitMillis)
+                    : acquireLocal(name, maxPermits, waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "请求已取消");
+        }
+        if (releaser == null) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, message);
+        }
+        permit.releasers.add(releaser);
+    }
+
+    private Runnable acquireRedis(RedissonClient redissonClient, String key, int maxPermits, long waitMillis)
+            throws InterruptedException {
+        RPermitExpirableSemaphore semaphore = redisSemaphores.get(key, k -> {
+            RPermitExpirableSemaphore s = redissonClient.getPermitExpirableSemaphore(k);
+            s.trySetPermits(maxPermits);
+            s.expire(SEMAPHORE_TTL);
+            return s;
+        });
+        String permitId = semaphore.tryAcquire(waitMillis, TimeUnit.MINUTES.toMillis(leaseMinutes), TimeUnit.MILLISECONDS);
+        return permitId == null ? null : () -> semaphore.tryRelease(permitId);
+    }
+
+    private Runnable acquireLocal(String name, int maxPermits, long waitMillis) throws InterruptedException {
+        Semaphore semaphore = localSemaphores.get(name, k -> new Semaphore(maxPermits, true));
+        return semaphore.tryAcquire(waitMillis, TimeUnit.MILLISECONDS) ? semaphore::release : null;
+    }
+}
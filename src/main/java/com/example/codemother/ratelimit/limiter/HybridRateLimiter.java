@@ -0,0 +1,192 @@
+package com.example.codemother.ratelimit.limiter;
+
+import com.example.codemother.ratelimit.algorithm.RateLimitAlgorithm;
+import com.example.codemother.ratelimit.annotation.RateLimit;
+import com.example.codemother.ratelimit.enums.RateLimitAlgorithmType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级限流器
+ * 每个实例为每个限流键维护一个本地许可池，从全局限流算法（Redis）批量租借许可；常规路径只是一次本地 CAS，
+ * 池内许可低于水位时在虚拟线程中异步补充，池空时才同步租借。
+ * 租借的许可只在租期内有效，过期作废（已计入全局计数），许可不会跨越多个时间窗口累积；
+ * 单次租借量按租期内的预期用量计算且不超过速率的十分之一，低速率的键（如每分钟 5 次）每次只租借 1 个，避免被单个实例囤积。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Component
+@Profile("prod")
+public class HybridRateLimiter {
+
+    @Resource
+    private List<RateLimitAlgorithm> algorithmList;
+
+    /**
+     * 是否启用本地许可池，关闭后每次请求直接访问全局限流
+     */
+    @Value("${rate-limit.local.enabled:true}")
+    private boolean localEnabled;
+
+    /**
+     * 租借许可的有效期（毫秒）
+     */
+    @Value("${rate-limit.local.lease-ttl-millis:1000}")
+    private long leaseTtlMillis;
+
+    private final Map<RateLimitAlgorithmType, RateLimitAlgorithm> algorithms = new EnumMap<>(RateLimitAlgorithmType.class);
+
+    /**
+     * 本地许可池（限流键 -> 许可池），长时间未访问的键自动清理
+     */
+    private final Cache<String, PermitPool> pools = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        for (RateLimitAlgorithm algorithm : algorithmList) {
+            algorithms.put(algorithm.getType(), algorithm);
+        }
+    }
+
+    /**
+     * 尝试获取一个许可
+     *
+     * @param key       限流键
+     * @param rateLimit 限流规则
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(String key, RateLimit rateLimit) {
+        RateLimitAlgorithm algorithm = algorithms.get(rateLimit.algorithm());
+        long rate = rateLimit.rate();
+        long intervalSeconds = rateLimit.rateInterval();
+        if (!localEnabled) {
+            return algorithm.tryAcquire(key, rate, intervalSeconds, 1);
+        }
+        PermitPool pool = pools.get(key, k -> new PermitPool(leaseBatchSize(rate, intervalSeconds)));
+        if (pool.tryTake()) {
+            if (pool.needsRefill()) {
+                refillAsync(pool, algorithm, key, rate, intervalSeconds);
+            }
+            return true;
+        }
+        // 池空：同步租借一批，批量不足时退化为只租借本次所需的 1 个
+        int batch = pool.batchSize;
+        if (batch > 1 && algorithm.tryAcquire(key, rate, intervalSeconds, batch)) {
+            pool.add(batch - 1, leaseTtlMillis);
+            return true;
+        }
+        return algorithm.tryAcquire(key, rate, intervalSeconds, 1);
+    }
+
+    /**
+     * 单次租借量：租期内的预期用量，不超过速率的十分之一，至少 1 个
+     */
+    private int leaseBatchSize(long rate, long intervalSeconds) {
+        long expected = rate * leaseTtlMillis / Math.max(intervalSeconds * 1000, 1);
+        return (int) Math.max(1, Math.min(expected, rate / 10));
+    }
+
+    private void refillAsync(PermitPool pool, RateLimitAlgorithm algorithm, String key, long rate, long intervalSeconds) {
+        if (!pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            try {
+                if (algorithm.tryAcquire(key, rate, intervalSeconds, pool.batchSize)) {
+                    pool.add(pool.batchSize, leaseTtlMillis);
+                }
+            } catch (Exception e) {
+                // 补充失败时下次请求同步租借
+                log.warn("限流许可补充失败: {}, 错误信息: {}", key, e.getMessage());
+            } finally {
+                pool.refilling.set(false);
+            }
+        });
+    }
+
+    /**
+     * 本地许可池：剩余许可数与过期时间打包在一个 long 中（高 20 位许可数，低 44 位过期时间毫秒），一次 CAS 完成检查与扣减
+     */
+    private static class PermitPool {
+
+        private static final int TIME_BITS = 44;
+
+        private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+        private static final long MAX_PERMITS = (1L << (Long.SIZE - TIME_BITS)) - 1;
+
+        private final int batchSize;
+
+        private final AtomicLong state = new AtomicLong();
+
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        private PermitPool(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        private boolean tryTake() {
+            long now = System.currentTimeMillis();
+            while (true) {
+                long current = state.get();
+                long permits = current >>> TIME_BITS;
+                if (permits == 0 || (current & TIME_MASK) <= now) {
+                    return false;
+                }
+                if (state.compareAndSet(current, current - (1L << TIME_BITS))) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 剩余许可不足半批时需要补充（批量为 1 时不预取）
+         */
+        private boolean needsRefill() {
+            return batchSize > 1 && (state.get() >>> TIME_BITS) <= batchSize / 2;
+        }
+
+        /**
+         * 放入新租借的许可；旧许可已过期时直接丢弃，未过期时合并（剩余不足半批）并使用新的过期时间
+         */
+        private void add(int permits, long ttlMillis) {
+            if (permits <= 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long expiresAt = now + ttlMillis;
+            while (true) {
+                long current = state.get();
+                long currentPermits = current >>> TIME_BITS;
+                long currentExpiresAt = current & TIME_MASK;
+                long next;
+                if (currentPermits == 0 || currentExpiresAt <= now) {
+                    next = ((long) permits << TIME_BITS) | expiresAt;
+                } else {
+                    long total = Math.min(currentPermits + permits, MAX_PERMITS);
+                    next = (total << TIME_BITS) | expiresAt;
+                }
+                if (state.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+    }
+}
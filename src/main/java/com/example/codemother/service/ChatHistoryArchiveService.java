@@ -0,0 +1,46 @@
+package com.example.codemother.service;
+
+import com.example.codemother.model.dto.ChatHistory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 对话历史归档服务
+ * 将超过保留期限或超出每个应用最近若干轮的对话历史从热表移入压缩的归档段，分页查询时透明读取。
+ */
+public interface ChatHistoryArchiveService {
+
+    /**
+     * 归档所有符合条件的对话历史
+     *
+     * @return 归档的消息条数
+     */
+    int archiveAll();
+
+    /**
+     * 归档某应用符合条件的对话历史
+     *
+     * @param appId 应用ID
+     * @return 归档的消息条数
+     */
+    int archiveApp(Long appId);
+
+    /**
+     * 按时间降序读取某应用早于游标的归档消息
+     *
+     * @param appId      应用ID
+     * @param cursorTime 游标创建时间，为空时从最新的归档消息开始
+     * @param cursorId   游标消息id（创建时间相同时只取 id 更小的消息）
+     * @param limit      最多返回条数
+     * @return 归档消息（按 createTime、id 降序）
+     */
+    List<ChatHistory> listArchived(Long appId, LocalDateTime cursorTime, Long cursorId, int limit);
+
+    /**
+     * 删除某应用的全部归档
+     *
+     * @param appId 应用ID
+     */
+    void deleteByAppId(Long appId);
+}
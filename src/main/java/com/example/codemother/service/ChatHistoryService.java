@@ -3,10 +3,14 @@ package com.example.codemother.service;
 import com.example.codemother.model.dto.ChatHistory;
 import com.example.codemother.model.dto.chat.ChatHistoryQueryRequest;
 import com.example.codemother.model.vo.ChatHistoryVO;
+import com.example.codemother.model.vo.CursorPageVO;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 对话历史 服务层。
@@ -26,11 +30,38 @@ public interface ChatHistoryService extends IService<ChatHistory> {
 
     Page<ChatHistoryVO> adminListPage(long pageNum, long pageSize);
 
+    /**
+     * 按 (createTime, id) 游标分页查询某应用的对话历史（按时间降序，不查询总数）
+     *
+     * @param appId          应用 ID
+     * @param cursor         上一页返回的游标，为空时从最新的消息开始
+     * @param lastCreateTime 兼容旧版游标：只返回早于该时间的消息（cursor 非空时忽略）
+     * @param pageSize       页面大小
+     * @return 游标分页结果
+     */
+    CursorPageVO<ChatHistoryVO> listByAppIdCursor(Long appId, String cursor, LocalDateTime lastCreateTime, int pageSize);
+
+    /**
+     * 管理员按 (createTime, id) 游标分页查询所有对话历史（按时间降序，不查询总数）
+     *
+     * @param cursor   上一页返回的游标，为空时从最新的消息开始
+     * @param pageSize 页面大小
+     * @return 游标分页结果
+     */
+    CursorPageVO<ChatHistoryVO> adminListCursor(String cursor, int pageSize);
+
     boolean deleteByAppId(Long appId);
 
     boolean addChatMessage(Long appId, String message, String messageType, Long userId);
 
     QueryWrapper getQueryWrapper(ChatHistoryQueryRequest chatHistoryQueryRequest);
 
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    /**
+     * 按 token 预算从新到旧加载历史对话，用于初始化对话记忆
+     *
+     * @param appId       应用 ID
+     * @param tokenBudget token 预算
+     * @return 历史消息（时间正序），较早的 AI 代码输出已替换为简短说明
+     */
+    List<ChatMessage> loadChatHistoryMessages(Long appId, int tokenBudget);
 }
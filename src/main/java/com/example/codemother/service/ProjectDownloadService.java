@@ -1,8 +1,10 @@
 package com.example.codemother.service;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 public interface ProjectDownloadService {
 
-    void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response);
+    void downloadProjectAsZip(String projectPath, String downloadFileName,
+                              HttpServletRequest request, HttpServletResponse response);
 }
@@ -0,0 +1,15 @@
+package com.example.codemother.service;
+
+/**
+ * 应用截图任务服务
+ */
+public interface ScreenshotJobService {
+
+    /**
+     * 提交应用截图任务（同一应用未执行的任务合并，以最新 URL 为准）
+     *
+     * @param appId  应用ID
+     * @param appUrl 应用访问URL
+     */
+    void submit(Long appId, String appUrl);
+}
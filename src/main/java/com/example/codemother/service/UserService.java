@@ -8,7 +8,9 @@ import com.mybatisflex.core.service.IService;
 import com.example.codemother.model.entity.User;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户 服务层。
@@ -75,6 +77,14 @@ public interface UserService extends IService<User> {
      */
     List<UserVO> getUserVOList(List<User> userList);
 
+    /**
+     * 批量获取用户 VO（优先读取缓存，未命中的用户一次查询）
+     *
+     * @param userIds 用户 id 集合
+     * @return 用户 id -> 用户 VO（不存在的用户不在结果中，返回的 VO 为共享对象，不得修改）
+     */
+    Map<Long, UserVO> getUserVOMap(Collection<Long> userIds);
+
     //盐值加密
     String newPassword(String password);
 
@@ -8,12 +8,14 @@ import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.example.codemother.ai.AiCodeGenTypeRoutingService;
 import com.example.codemother.ai.AiCodeGenTypeRoutingServiceFactory;
-import com.example.codemother.core.builder.VueProjectBuilder;
+import com.example.codemother.core.builder.BuildPriority;
+import com.example.codemother.core.builder.VueBuildScheduler;
 import com.example.codemother.core.handler.StreamHandlerExecutor;
+import com.example.codemother.core.hosting.DeployReleaseManager;
 import com.example.codemother.core.handler.SimpleTextStreamHandler;
 import com.example.codemother.langgraph4j.CodeGenWorkflow;
 import com.example.codemother.model.dto.App.AppAddRequest;
-import com.example.codemother.service.ScreenshotService;
+import com.example.codemother.service.ScreenshotJobService;
 import lombok.extern.slf4j.Slf4j;
 
 import com.example.codemother.constant.AppConstant;
@@ -30,11 +32,13 @@ import com.example.codemother.model.vo.UserVO;
 import com.example.codemother.service.AppService;
 import com.example.codemother.service.ChatHistoryService;
 import com.example.codemother.service.UserService;
+import com.example.codemother.utils.VOConverter;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.example.codemother.model.entity.App;
 import com.example.codemother.mapper.AppMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
@@ -44,6 +48,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -71,26 +76,33 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     private StreamHandlerExecutor streamHandlerExecutor;
 
     @Autowired
-    private VueProjectBuilder vueProjectBuilder;
+    private VueBuildScheduler vueBuildScheduler;
 
     @Autowired
-    private ScreenshotService screenshotService;
+    private ScreenshotJobService screenshotJobService;
+
+    @Autowired
+    private DeployReleaseManager deployReleaseManager;
 
     @Autowired
     private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
+
+    /**
+     * 部署站点的访问地址（与 API 不同源）
+     */
+    @Value("${deploy.host:http://deploy.localhost:8123/api/deploy}")
+    private String deployHost;
+
     @Override
     public AppVO getAppVO(App app) {
         if (app == null) {
             return null;
         }
-        AppVO appVO = new AppVO();
-        BeanUtil.copyProperties(app, appVO);
-        // 关联查询用户信息
+        AppVO appVO = VOConverter.toAppVO(app);
+        // 关联用户信息（优先读取用户 VO 缓存）
         Long userId = app.getUserId();
         if (userId != null) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
-            appVO.setUser(userVO);
+            appVO.setUser(userService.getUserVOMap(Set.of(userId)).get(userId));
         }
         return appVO;
     }
@@ -118,11 +130,11 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (CollUtil.isEmpty(appList)) {
             return new ArrayList<>();
         }
-        // 批量获取用户信息，避免 N+1 查询问题
-        Set<Long> userIds = appList.stream().map(App::getUserId).collect(Collectors.toSet());
-        Map<Long, UserVO> userVOMap = userService.listByIds(userIds).stream().collect(Collectors.toMap(User::getId, userService::getUserVO));
+        // 批量获取用户信息（缓存 + 一次查询），避免 N+1 查询问题
+        Set<Long> userIds = appList.stream().map(App::getUserId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, UserVO> userVOMap = userService.getUserVOMap(userIds);
         return appList.stream().map(app -> {
-            AppVO appVO = getAppVO(app);
+            AppVO appVO = VOConverter.toAppVO(app);
             UserVO userVO = userVOMap.get(app.getUserId());
             appVO.setUser(userVO);
             return appVO;
@@ -186,8 +198,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 7. Vue 项目特殊处理：执行构建
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-            // Vue 项目需要构建
-            boolean buildSuccess = vueProjectBuilder.buildProject(sourceDirPath);
+            // Vue 项目需要构建（部署优先于生成构建排队）
+            boolean buildSuccess = vueBuildScheduler.submit(appId, sourceDirPath, BuildPriority.DEPLOY).join();
             ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败，请检查代码和依赖");
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDirPath, "dist");
@@ -196,14 +208,18 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             sourceDir = distDir;
             log.info("Vue 项目构建成功，将部署 dist 目录: {}", distDir.getAbsolutePath());
         }
-        // 8. 复制文件到部署目录
-        String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
-
-        // 9. 返回可访问的 URL
-        // return String.format("%s/%s/", AppConstant.CODE_DEPLOY_HOST, deployKey);
+        // 8. 发布为新的部署版本（未变化的文件硬链接复用），准备完成后原子切换当前版本
+        deployReleaseManager.publish(deployKey, sourceDir.toPath());
+        // 9. 更新应用的 deployKey 和部署时间
+        App updateApp = new App();
+        updateApp.setId(appId);
+        updateApp.setDeployKey(deployKey);
+        updateApp.setDeployedTime(LocalDateTime.now());
+        boolean updateResult = this.updateById(updateApp);
+        ThrowUtils.throwIf(!updateResult, ErrorCode.OPERATION_ERROR, "更新应用部署信息失败");
 
         // 10. 构建应用访问 URL
-        String appDeployUrl = String.format("%s/%s/", AppConstant.CODE_DEPLOY_HOST, deployKey);
+        String appDeployUrl = String.format("%s/%s/", deployHost, deployKey);
         // 11. 异步生成截图并更新应用封面
         generateAppScreenshotAsync(appId, appDeployUrl);
         return appDeployUrl;
@@ -246,17 +262,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
      */
     @Override
     public void generateAppScreenshotAsync(Long appId, String appUrl) {
-        // 使用虚拟线程异步执行
-        Thread.startVirtualThread(() -> {
-            // 调用截图服务生成截图并上传
-            String screenshotUrl = screenshotService.generateAndUploadScreenshot(appUrl);
-            // 更新应用封面字段
-            App updateApp = new App();
-            updateApp.setId(appId);
-            updateApp.setCover(screenshotUrl);
-            boolean updated = this.updateById(updateApp);
-            ThrowUtils.throwIf(!updated, ErrorCode.OPERATION_ERROR, "更新应用封面字段失败");
-        });
+        // 提交到截图任务队列，同一应用的多次部署合并为一次截图，失败自动重试
+        screenshotJobService.submit(appId, appUrl);
     }
 
 
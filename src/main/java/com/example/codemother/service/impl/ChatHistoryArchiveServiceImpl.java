@@ -0,0 +1,364 @@
+package com.example.codemother.service.impl;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.codemother.mapper.ChatHistoryArchiveMapper;
+import com.example.codemother.mapper.ChatHistoryMapper;
+import com.example.codemother.model.dto.ChatHistory;
+import com.example.codemother.model.entity.ChatHistoryArchive;
+import com.example.codemother.service.ChatHistoryArchiveService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mybatisflex.core.logicdelete.LogicDeleteManager;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.mybatisflex.core.row.Db;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 对话历史归档服务实现
+ * 后台定期把每个应用最近若干条之前的消息（按 createTime、id 从旧到新）打包为段，超过保留天数的不足一段也归档，最近若干条始终保留：
+ * 序列化为 JSON 数组后 deflate 压缩写入 chat_history_archive，并在同一事务中从热表物理删除。
+ * 同一应用的归档消息总是早于热表中的消息，游标分页读到热表末尾后直接接着读取归档段，解压结果按段缓存。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Service
+public class ChatHistoryArchiveServiceImpl implements ChatHistoryArchiveService {
+
+    private static final String CODEC_DEFLATE = "deflate";
+
+    /**
+     * 每轮扫描处理的应用数
+     */
+    private static final int APP_SCAN_BATCH = 200;
+
+    /**
+     * 每次查询读取的归档段数
+     */
+    private static final int SEGMENT_QUERY_BATCH = 4;
+
+    @Autowired
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Autowired
+    private ChatHistoryArchiveMapper chatHistoryArchiveMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 是否启用后台归档
+     */
+    @Value("${chat-history.archive.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 最近保留条数之前的消息超过该天数后，不足一段也归档
+     */
+    @Value("${chat-history.archive.older-than-days:30}")
+    private int olderThanDays;
+
+    /**
+     * 每个应用在热表中保留的最近对话轮数（一轮为一问一答）
+     */
+    @Value("${chat-history.archive.keep-recent-turns:50}")
+    private int keepRecentTurns;
+
+    /**
+     * 每个归档段的消息条数
+     */
+    @Value("${chat-history.archive.segment-size:100}")
+    private int segmentSize;
+
+    /**
+     * 归档扫描间隔（分钟）
+     */
+    @Value("${chat-history.archive.interval-minutes:60}")
+    private long intervalMinutes;
+
+    /**
+     * 已解压的归档段（段 id -> 按时间正序的消息）
+     */
+    private final Cache<Long, List<ChatHistory>> segmentCache = Caffeine.newBuilder()
+            .maximumWeight(32L * 1024 * 1024)
+            .weigher((Long id, List<ChatHistory> messages) -> messages.stream()
+                    .mapToInt(message -> 64 + 2 * message.getMessage().length())
+                    .sum())
+            .build();
+
+    private Thread archiver;
+
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        archiver = Thread.ofVirtual().name("chat-history-archiver").start(this::archiveLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        if (archiver != null) {
+            archiver.interrupt();
+        }
+    }
+
+    private void archiveLoop() {
+        while (!stopped) {
+            try {
+                Thread.sleep(intervalMinutes * 60_000);
+                int archived = archiveAll();
+                if (archived > 0) {
+                    log.info("对话历史归档完成，共归档 {} 条消息", archived);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("对话历史归档异常: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public int archiveAll() {
+        Set<Long> appIds = new LinkedHashSet<>();
+        // 消息数超出保留条数，且超出部分凑满一段或最早的消息已过期的应用（走 idx_appId_createTime 索引）；
+        // 消息数不足保留条数的应用无论多久未使用都不会归档，不必扫描
+        int keepRecentMessages = keepRecentMessages();
+        Db.selectObjectList("select appId from chat_history where isDelete = 0 group by appId "
+                                + "having count(*) > ? and (count(*) > ? or min(createTime) < ?) limit ?",
+                        keepRecentMessages, keepRecentMessages + segmentSize,
+                        LocalDateTime.now().minusDays(olderThanDays), APP_SCAN_BATCH)
+                .forEach(appId -> appIds.add(((Number) appId).longValue()));
+        int total = 0;
+        for (Long appId : appIds) {
+            if (stopped) {
+                break;
+            }
+            total += archiveApp(appId);
+        }
+        return total;
+    }
+
+    @Override
+    public int archiveApp(Long appId) {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(olderThanDays);
+        // 最近 N 条消息无论多旧都保留在热表中，对话记忆只从热表加载，长期未使用的应用回来后仍能继续编辑
+        ChatHistory boundary = findKeepBoundary(appId);
+        if (boundary == null) {
+            return 0;
+        }
+        LocalDateTime boundaryTime = boundary.getCreateTime();
+        Long boundaryId = boundary.getId();
+        int total = 0;
+        while (!stopped) {
+            // 可归档的消息是按 (createTime, id) 排序、排在最近 N 条之前的前缀
+            QueryWrapper queryWrapper = QueryWrapper.create()
+                    .select("id", "message", "messageType", "appId", "userId", "createTime")
+                    .eq("appId", appId)
+                    .and(wrapper -> wrapper.lt("createTime", boundaryTime)
+                            .or(inner -> inner.eq("createTime", boundaryTime).lt("id", boundaryId)));
+            queryWrapper.orderBy("createTime", true)
+                    .orderBy("id", true)
+                    .limit(segmentSize);
+            List<ChatHistory> messages = chatHistoryMapper.selectListByQuery(queryWrapper);
+            // 未过期的消息凑满一段再归档，避免频繁产生小段
+            boolean expired = !messages.isEmpty() && messages.getLast().getCreateTime().isBefore(cutoff);
+            if (messages.isEmpty() || (messages.size() < segmentSize && !expired)) {
+                break;
+            }
+            archiveSegment(appId, messages);
+            total += messages.size();
+            if (messages.size() < segmentSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("应用 {} 归档 {} 条对话历史", appId, total);
+        }
+        return total;
+    }
+
+    /**
+     * 热表中需要保留的最早一条消息（第 N 新的消息），消息数不足时返回 null
+     */
+    private ChatHistory findKeepBoundary(Long appId) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select("id", "createTime")
+                .eq("appId", appId)
+                .orderBy("createTime", false)
+                .orderBy("id", false)
+                .limit(keepRecentMessages() - 1, 1);
+        return chatHistoryMapper.selectOneByQuery(queryWrapper);
+    }
+
+    private int keepRecentMessages() {
+        return Math.max(keepRecentTurns, 1) * 2;
+    }
+
+    /**
+     * 写入归档段并从热表物理删除（同一事务）
+     */
+    private void archiveSegment(Long appId, List<ChatHistory> messages) {
+        JSONArray array = new JSONArray();
+        for (ChatHistory message : messages) {
+            JSONObject item = new JSONObject();
+            item.set("id", message.getId());
+            item.set("message", message.getMessage());
+            item.set("messageType", message.getMessageType());
+            item.set("userId", message.getUserId());
+            item.set("createTime", message.getCreateTime().toString());
+            array.add(item);
+        }
+        ChatHistory first = messages.getFirst();
+        ChatHistory last = messages.getLast();
+        ChatHistoryArchive archive = ChatHistoryArchive.builder()
+                .appId(appId)
+                .firstId(first.getId())
+                .lastId(last.getId())
+                .firstCreateTime(first.getCreateTime())
+                .lastCreateTime(last.getCreateTime())
+                .messageCount(messages.size())
+                .codec(CODEC_DEFLATE)
+                .content(deflate(array.toString().getBytes(StandardCharsets.UTF_8)))
+                .createTime(LocalDateTime.now())
+                .build();
+        List<Long> ids = messages.stream().map(ChatHistory::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            chatHistoryArchiveMapper.insert(archive);
+            // 物理删除，热表及其索引随之缩小
+            LogicDeleteManager.execWithoutLogicDelete(() -> chatHistoryMapper.deleteBatchByIds(ids));
+        });
+    }
+
+    @Override
+    public List<ChatHistory> listArchived(Long appId, LocalDateTime cursorTime, Long cursorId, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<ChatHistory> result = new ArrayList<>();
+        Long beforeSegmentId = null;
+        while (result.size() < limit) {
+            // 只查段的元数据，内容按需从缓存或数据库加载
+            QueryWrapper queryWrapper = QueryWrapper.create()
+                    .select("id")
+                    .eq("appId", appId)
+                    .lt("id", beforeSegmentId, beforeSegmentId != null);
+            if (cursorTime != null) {
+                // 段内最早的消息早于游标，段中才可能有游标之后的消息
+                queryWrapper.and(wrapper -> wrapper.lt("firstCreateTime", cursorTime)
+                        .or(inner -> inner.eq("firstCreateTime", cursorTime).lt("firstId", cursorId)));
+            }
+            queryWrapper.orderBy("id", false).limit(SEGMENT_QUERY_BATCH);
+            List<ChatHistoryArchive> segments = chatHistoryArchiveMapper.selectListByQuery(queryWrapper);
+            for (ChatHistoryArchive segment : segments) {
+                List<ChatHistory> messages = segmentCache.get(segment.getId(), this::loadSegment);
+                for (int i = messages.size() - 1; i >= 0 && result.size() < limit; i--) {
+                    ChatHistory message = messages.get(i);
+                    if (isBeforeCursor(message, cursorTime, cursorId)) {
+                        result.add(message);
+                    }
+                }
+                beforeSegmentId = segment.getId();
+            }
+            if (segments.size() < SEGMENT_QUERY_BATCH) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private boolean isBeforeCursor(ChatHistory message, LocalDateTime cursorTime, Long cursorId) {
+        if (cursorTime == null) {
+            return true;
+        }
+        int compare = message.getCreateTime().compareTo(cursorTime);
+        return compare < 0 || (compare == 0 && message.getId() < cursorId);
+    }
+
+    private List<ChatHistory> loadSegment(Long segmentId) {
+        ChatHistoryArchive archive = chatHistoryArchiveMapper.selectOneById(segmentId);
+        if (archive == null) {
+            return Collections.emptyList();
+        }
+        String json = new String(inflate(archive.getContent()), StandardCharsets.UTF_8);
+        JSONArray array = JSONUtil.parseArray(json);
+        List<ChatHistory> messages = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            LocalDateTime createTime = LocalDateTime.parse(item.getStr("createTime"));
+            messages.add(ChatHistory.builder()
+                    .id(item.getLong("id"))
+                    .appId(archive.getAppId())
+                    .message(item.getStr("message"))
+                    .messageType(item.getStr("messageType"))
+                    .userId(item.getLong("userId"))
+                    .createTime(createTime)
+                    .updateTime(createTime)
+                    .isDelete(0)
+                    .build());
+        }
+        return messages;
+    }
+
+    @Override
+    public void deleteByAppId(Long appId) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq("appId", appId);
+        chatHistoryArchiveMapper.deleteByQuery(queryWrapper);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data), inflater)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.codemother.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
+import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.exception.ThrowUtils;
 import com.example.codemother.mapper.ChatHistoryMapper;
@@ -8,28 +8,47 @@ import com.example.codemother.model.dto.ChatHistory;
 import com.example.codemother.model.dto.chat.ChatHistoryQueryRequest;
 import com.example.codemother.model.enums.MessageTypeEnum;
 import com.example.codemother.model.vo.ChatHistoryVO;
+import com.example.codemother.model.vo.CursorPageVO;
 import com.example.codemother.service.AppService;
+import com.example.codemother.service.ChatHistoryArchiveService;
 import com.example.codemother.service.ChatHistoryService;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 
+import com.example.codemother.ai.memory.TokenBudgetChatMemory;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * 对话历史 服务层实现。
+ * 写入走异步写后队列：消息进入有界缓冲区后立即返回，后台线程按批合并为多行 INSERT，停机时全部刷盘；
+ * 同一轮对话的重复写入（控制器、服务、流处理器各写一次）按幂等键丢弃。读取对话历史前先刷出缓冲区，保证读到自己的写入。
  */
 @Service
 @Slf4j
@@ -42,20 +61,89 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Autowired
     private ChatHistoryMapper chatHistoryMapper;
 
+    @Autowired
+    private ChatHistoryArchiveService chatHistoryArchiveService;
+
+    /**
+     * 加载对话记忆时每页读取的历史条数
+     */
+    private static final int MEMORY_PAGE_SIZE = 10;
+
+    /**
+     * 加载对话记忆时最多读取的页数
+     */
+    private static final int MEMORY_MAX_PAGES = 10;
+
+    /**
+     * 游标分页的最大页面大小
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
+    /**
+     * 写后缓冲区容量，写满时由写入线程同步刷盘
+     */
+    @Value("${chat-history.write-behind.buffer-capacity:10000}")
+    private int bufferCapacity;
+
+    /**
+     * 每批插入的最大条数
+     */
+    @Value("${chat-history.write-behind.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 缓冲区为空时的刷盘间隔（毫秒）
+     */
+    @Value("${chat-history.write-behind.flush-interval-millis:100}")
+    private long flushIntervalMillis;
+
+    private ArrayBlockingQueue<ChatHistory> writeBuffer;
+
+    /**
+     * 刷盘锁：后台刷盘和读前刷盘互斥，已取出未写入的消息不会被读取遗漏
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 每个应用当前对话轮次（appId -> 轮次），用于丢弃同一轮次的重复写入
+     */
+    private final Cache<Long, ChatTurn> chatTurns = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    private Thread flusher;
+
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void init() {
+        writeBuffer = new ArrayBlockingQueue<>(bufferCapacity);
+        flusher = Thread.ofVirtual().name("chat-history-flusher").start(this::flushLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        flusher.interrupt();
+        flushPending();
+        log.info("对话历史写后队列已关闭");
+    }
+
 
     @Override
     public void saveUserMessage(Long appId, Long userId, String message) {
-        addChatMessage(appId, message, MessageTypeEnum.USER.name(), userId);
+        addChatMessage(appId, message, MessageTypeEnum.USER.getValue(), userId);
     }
 
     @Override
     public void saveAiMessage(Long appId, Long userId, String message) {
-        addChatMessage(appId, message, MessageTypeEnum.AI.name(), userId);
+        addChatMessage(appId, message, MessageTypeEnum.AI.getValue(), userId);
     }
 
     @Override
     public void saveErrorMessage(Long appId, Long userId, String errorMessage) {
-        addChatMessage(appId, errorMessage, MessageTypeEnum.ERROR.name(), userId);
+        addChatMessage(appId, errorMessage, MessageTypeEnum.ERROR.getValue(), userId);
     }
 
     @Override
@@ -67,19 +155,136 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         // 验证消息类型是否有效
         MessageTypeEnum messageTypeEnum = MessageTypeEnum.getEnumByValue(messageType);
         ThrowUtils.throwIf(messageTypeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的消息类型: " + messageType);
+        if (isDuplicateWrite(appId, userId, message, messageTypeEnum)) {
+            log.debug("丢弃重复的对话历史写入，appId: {}, 类型: {}", appId, messageType);
+            return true;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // 入队时确定主键和时间，批量插入后顺序与写入顺序一致
         ChatHistory chatHistory = ChatHistory.builder()
+                .id(IdUtil.getSnowflakeNextId())
                 .appId(appId)
                 .message(message)
                 .messageType(messageType)
                 .userId(userId)
+                .createTime(now)
+                .updateTime(now)
+                .isDelete(0)
                 .build();
-        return this.save(chatHistory);
+        while (!writeBuffer.offer(chatHistory)) {
+            // 缓冲区已满，由写入线程同步刷盘（背压）
+            flushPending();
+        }
+        return true;
+    }
+
+    /**
+     * 同一轮对话的幂等判断：用户消息以（应用、用户、内容）哈希为幂等键，尚未回复时重复提交视为同一轮；
+     * 每轮只保留第一条 AI 回复或错误消息
+     */
+    private boolean isDuplicateWrite(Long appId, Long userId, String message, MessageTypeEnum messageType) {
+        ChatTurn[] duplicate = {null};
+        chatTurns.asMap().compute(appId, (key, turn) -> {
+            if (messageType == MessageTypeEnum.USER) {
+                String idempotencyKey = DigestUtil.sha256Hex(appId + ":" + userId + ":" + message);
+                if (turn != null && !turn.replied() && turn.idempotencyKey().equals(idempotencyKey)) {
+                    duplicate[0] = turn;
+                    return turn;
+                }
+                return new ChatTurn(idempotencyKey, false);
+            }
+            if (turn == null) {
+                return null;
+            }
+            if (turn.replied()) {
+                duplicate[0] = turn;
+                return turn;
+            }
+            return new ChatTurn(turn.idempotencyKey(), true);
+        });
+        return duplicate[0] != null;
+    }
+
+    /**
+     * 后台刷盘循环：缓冲区有积压时连续刷盘，否则按间隔等待
+     */
+    private void flushLoop() {
+        while (!stopped) {
+            try {
+                int flushed = flushBatch();
+                if (flushed < batchSize) {
+                    Thread.sleep(flushIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("对话历史刷盘异常: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 刷出缓冲区中的全部消息
+     */
+    private void flushPending() {
+        while (flushBatch() > 0) {
+            // 继续刷出剩余消息
+        }
+    }
+
+    /**
+     * 取出一批消息，合并为一条多行 INSERT 写入；批量失败时逐条写入，尽量不丢消息
+     *
+     * @return 本批条数
+     */
+    private int flushBatch() {
+        flushLock.lock();
+        try {
+            List<ChatHistory> batch = new ArrayList<>(Math.min(batchSize, writeBuffer.size()));
+            writeBuffer.drainTo(batch, batchSize);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            try {
+                chatHistoryMapper.insertBatch(batch);
+            } catch (Exception e) {
+                log.error("对话历史批量写入失败，改为逐条写入，条数: {}, error: {}", batch.size(), e.getMessage());
+                for (ChatHistory chatHistory : batch) {
+                    try {
+                        chatHistoryMapper.insert(chatHistory);
+                    } catch (Exception ex) {
+                        log.error("对话历史写入失败，appId: {}, error: {}", chatHistory.getAppId(), ex.getMessage());
+                    }
+                }
+            }
+            return batch.size();
+        } finally {
+            flushLock.unlock();
+        }
     }
 
+    /**
+     * 对话轮次
+     *
+     * @param idempotencyKey 本轮用户消息的幂等键
+     * @param replied        本轮是否已记录 AI 回复
+     */
+    private record ChatTurn(String idempotencyKey, boolean replied) {
+    }
 
+    /**
+     * 分页游标
+     *
+     * @param createTime 上一页最后一条记录的创建时间
+     * @param id         上一页最后一条记录的 id
+     */
+    private record HistoryCursor(LocalDateTime createTime, Long id) {
+    }
 
     @Override
     public Page<ChatHistoryVO> listByAppIdPage(Long appId, long pageNum, long pageSize) {
+        flushPending();
         QueryWrapper query = QueryWrapper.create()
                 .eq("appId", appId)
                 .orderBy("createTime", false); // false = DESC
@@ -95,9 +300,108 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         return toVOPage(page);
     }
 
+    @Override
+    public CursorPageVO<ChatHistoryVO> listByAppIdCursor(Long appId, String cursor, LocalDateTime lastCreateTime,
+                                                         int pageSize) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        flushPending();
+        int size = normalizePageSize(pageSize);
+        HistoryCursor historyCursor = StrUtil.isNotBlank(cursor) ? decodeCursor(cursor)
+                // 兼容旧版游标：严格早于 lastCreateTime（id 小于最小值的条件恒不成立）
+                : lastCreateTime != null ? new HistoryCursor(lastCreateTime, Long.MIN_VALUE) : null;
+        // 走 idx_appId_createTime 索引（二级索引隐含主键 id），按 (createTime, id) 定位，无需 OFFSET 和 COUNT
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq("appId", appId);
+        List<ChatHistory> historyList = new ArrayList<>(listByCursor(queryWrapper, historyCursor, size));
+        if (historyList.size() <= size) {
+            // 热表不足一页，继续从归档段读取更早的消息（归档的消息都早于热表中的消息）
+            HistoryCursor archiveCursor = historyList.isEmpty() ? historyCursor
+                    : new HistoryCursor(historyList.getLast().getCreateTime(), historyList.getLast().getId());
+            historyList.addAll(chatHistoryArchiveService.listArchived(appId,
+                    archiveCursor == null ? null : archiveCursor.createTime(),
+                    archiveCursor == null ? null : archiveCursor.id(),
+                    size + 1 - historyList.size()));
+        }
+        return toCursorPage(historyList, size);
+    }
+
+    @Override
+    public CursorPageVO<ChatHistoryVO> adminListCursor(String cursor, int pageSize) {
+        int size = normalizePageSize(pageSize);
+        HistoryCursor historyCursor = StrUtil.isNotBlank(cursor) ? decodeCursor(cursor) : null;
+        return toCursorPage(listByCursor(QueryWrapper.create(), historyCursor, size), size);
+    }
+
+    private int normalizePageSize(int pageSize) {
+        return pageSize <= 0 ? 10 : Math.min(pageSize, MAX_CURSOR_PAGE_SIZE);
+    }
+
+    /**
+     * 按 (createTime, id) 降序读取游标之后的记录，多取一条用于判断是否还有下一页
+     */
+    private List<ChatHistory> listByCursor(QueryWrapper queryWrapper, HistoryCursor cursor, int size) {
+        if (cursor != null) {
+            applyKeysetCursor(queryWrapper, cursor.createTime(), cursor.id());
+        }
+        queryWrapper.orderBy("createTime", false)
+                .orderBy("id", false)
+                .limit(size + 1);
+        return this.list(queryWrapper);
+    }
+
+    /**
+     * 最后一条记录的 (createTime, id) 编码为下一页游标
+     */
+    private CursorPageVO<ChatHistoryVO> toCursorPage(List<ChatHistory> historyList, int size) {
+        boolean hasMore = historyList.size() > size;
+        if (hasMore) {
+            historyList = historyList.subList(0, size);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            ChatHistory last = historyList.getLast();
+            nextCursor = encodeCursor(last.getCreateTime(), last.getId());
+        }
+        List<ChatHistoryVO> records = historyList.stream().map(this::toVO).collect(Collectors.toList());
+        return new CursorPageVO<>(records, nextCursor, hasMore);
+    }
+
+    /**
+     * 只取严格排在游标之后的记录：createTime 更早，或 createTime 相同且 id 更小
+     */
+    private void applyKeysetCursor(QueryWrapper queryWrapper, LocalDateTime cursorTime, Long cursorId) {
+        queryWrapper.and(wrapper -> wrapper.lt("createTime", cursorTime)
+                .or(inner -> inner.eq("createTime", cursorTime).lt("id", cursorId)));
+    }
+
+    private HistoryCursor decodeCursor(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标无效");
+        }
+        String[] parts = decoded.split("\\|");
+        ThrowUtils.throwIf(parts.length != 2, ErrorCode.PARAMS_ERROR, "游标无效");
+        try {
+            return new HistoryCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标无效");
+        }
+    }
+
+    private String encodeCursor(LocalDateTime createTime, Long id) {
+        String raw = createTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 先刷出缓冲区，避免删除后又写入该应用的消息
+        flushPending();
+        chatTurns.invalidate(appId);
+        chatHistoryArchiveService.deleteByAppId(appId);
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
         return this.remove(queryWrapper);
@@ -165,39 +469,70 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public List<ChatMessage> loadChatHistoryMessages(Long appId, int tokenBudget) {
         try {
-            // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
-            QueryWrapper queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistory::getAppId, appId)
-                    .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
-            List<ChatHistory> historyList = this.list(queryWrapper);
-            if (CollUtil.isEmpty(historyList)) {
-                return 0;
-            }
-            // 反转列表，确保按时间正序（老的在前，新的在后）
-            historyList = historyList.reversed();
-            // 按时间顺序添加到记忆中
-            int loadedCount = 0;
-            // 先清理历史缓存，防止重复加载
-            chatMemory.clear();
-            for (ChatHistory history : historyList) {
-                if (MessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(UserMessage.from(history.getMessage()));
-                    loadedCount++;
-                } else if (MessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(AiMessage.from(history.getMessage()));
-                    loadedCount++;
+            // 本轮的用户消息可能还在缓冲区中
+            flushPending();
+            // 从新到旧分页读取，累计 token 超出预算即停止；结果最后反转为时间正序
+            List<ChatMessage> messages = new ArrayList<>();
+            int usedTokens = 0;
+            // 最新一条是本轮的用户消息，由 AI 服务自行写入记忆，这里跳过
+            boolean skippedLatest = false;
+            boolean keptLatestAi = false;
+            LocalDateTime cursorTime = null;
+            Long cursorId = null;
+            for (int page = 0; page < MEMORY_MAX_PAGES; page++) {
+                QueryWrapper queryWrapper = QueryWrapper.create()
+                        .select("id", "message", "messageType", "createTime")
+                        .eq("appId", appId)
+                        .in("messageType", MessageTypeEnum.USER.getValue(), MessageTypeEnum.AI.getValue());
+                if (cursorTime != null) {
+                    applyKeysetCursor(queryWrapper, cursorTime, cursorId);
+                }
+                queryWrapper.orderBy("createTime", false)
+                        .orderBy("id", false)
+                        .limit(MEMORY_PAGE_SIZE);
+                List<ChatHistory> historyList = this.list(queryWrapper);
+                for (ChatHistory history : historyList) {
+                    cursorTime = history.getCreateTime();
+                    cursorId = history.getId();
+                    if (!skippedLatest) {
+                        skippedLatest = true;
+                        continue;
+                    }
+                    ChatMessage message;
+                    if (MessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
+                        message = UserMessage.from(history.getMessage());
+                    } else {
+                        // 只保留最近一次 AI 回复的完整代码，更早的代码输出替换为简短说明
+                        String text = keptLatestAi
+                                ? TokenBudgetChatMemory.compactCodeBlocks(history.getMessage())
+                                : history.getMessage();
+                        keptLatestAi = true;
+                        message = AiMessage.from(text);
+                    }
+                    int tokens = TokenBudgetChatMemory.estimateTokens(message);
+                    if (usedTokens + tokens > tokenBudget) {
+                        return finishLoading(appId, messages, usedTokens);
+                    }
+                    usedTokens += tokens;
+                    messages.add(message);
+                }
+                if (historyList.size() < MEMORY_PAGE_SIZE) {
+                    break;
                 }
             }
-            log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);
-            return loadedCount;
+            return finishLoading(appId, messages, usedTokens);
         } catch (Exception e) {
             log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
             // 加载失败不影响系统运行，只是没有历史上下文
-            return 0;
+            return List.of();
         }
     }
 
+    private List<ChatMessage> finishLoading(Long appId, List<ChatMessage> messages, int usedTokens) {
+        log.info("成功为 appId: {} 加载了 {} 条历史对话，约 {} tokens", appId, messages.size(), usedTokens);
+        return messages.reversed();
+    }
+
 }
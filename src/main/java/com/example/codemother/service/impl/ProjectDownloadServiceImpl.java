@@ -1,20 +1,46 @@
 package com.example.codemother.service.impl;
 
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.ZipUtil;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import com.example.codemother.exception.ThrowUtils;
 import com.example.codemother.service.ProjectDownloadService;
+import com.example.codemother.utils.ProjectArchiveCache;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 @Slf4j
@@ -33,7 +59,8 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
             "target",
             ".mvn",
             ".idea",
-            ".vscode"
+            ".vscode",
+            ".build-manifest.json"
     );
 
     /**
@@ -45,33 +72,9 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
             ".cache"
     );
 
-    /**
-     * 检查路径是否允许包含在压缩包中
-     *
-     * @param projectRoot 项目根目录
-     * @param fullPath    完整路径
-     * @return 是否允许
-     */
-    private boolean isPathAllowed(Path projectRoot, Path fullPath) {
-        // 获取相对路径
-        Path relativePath = projectRoot.relativize(fullPath);
-        // 检查路径中的每一部分
-        for (Path part : relativePath) {
-            String partName = part.toString();
-            // 检查是否在忽略名称列表中
-            if (IGNORED_NAMES.contains(partName)) {
-                return false;
-            }
-            // 检查文件扩展名
-            if (IGNORED_EXTENSIONS.stream().anyMatch(partName::endsWith)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     @Override
-    public void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response) {
+    public void downloadProjectAsZip(String projectPath, String downloadFileName,
+                                     HttpServletRequest request, HttpServletResponse response) {
         // 基础校验
         ThrowUtils.throwIf(StrUtil.isBlank(projectPath), ErrorCode.PARAMS_ERROR, "项目路径不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(downloadFileName), ErrorCode.PARAMS_ERROR, "下载文件名不能为空");
@@ -79,21 +82,247 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
         ThrowUtils.throwIf(!projectDir.exists(), ErrorCode.NOT_FOUND_ERROR, "项目目录不存在");
         ThrowUtils.throwIf(!projectDir.isDirectory(), ErrorCode.PARAMS_ERROR, "指定路径不是目录");
         log.info("开始打包下载项目: {} -> {}.zip", projectPath, downloadFileName);
-        // 设置 HTTP 响应头
-        response.setStatus(HttpServletResponse.SC_OK);
-        response.setContentType("application/zip");
-        response.addHeader("Content-Disposition",
-                String.format("attachment; filename=\"%s.zip\"", downloadFileName));
-        // 定义文件过滤器
-        FileFilter filter = file -> isPathAllowed(projectDir.toPath(), file.toPath());
+        String projectDirName = projectDir.getName();
+        // 1. 内存索引命中：目录自上次打包后未被写入，直接返回缓存文件
+        ProjectArchiveCache.CachedArchive archive = ProjectArchiveCache.get(projectDirName);
+        if (archive != null && serveArchive(archive, downloadFileName, request, response)) {
+            return;
+        }
+        // 2. 未命中（或缓存文件已被并发的打包清理）：遍历目录（忽略的目录整体跳过），压缩到缓存文件，
+        // 压缩时顺带计算内容哈希，再按缓存文件返回；刚写入的文件又被清理时重新打包一次
+        Path projectRoot = projectDir.toPath();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long version = ProjectArchiveCache.currentVersion(projectDirName);
+            List<Path> files = collectFiles(projectRoot);
+            archive = writeArchive(projectRoot, files, Paths.get(ProjectArchiveCache.ARCHIVE_CACHE_DIR, projectDirName));
+            ProjectArchiveCache.put(projectDirName, version, archive);
+            if (serveArchive(archive, downloadFileName, request, response)) {
+                return;
+            }
+        }
+        throw new BusinessException(ErrorCode.SYSTEM_ERROR, "项目打包下载失败");
+    }
+
+    /**
+     * 遍历项目目录，收集需要打包的文件（忽略的目录不进入，按相对路径排序）
+     */
+    private List<Path> collectFiles(Path projectRoot) {
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(projectRoot, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(projectRoot) && isIgnored(dir.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !isIgnored(file.getFileName().toString())) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.error("遍历项目目录失败: {}", projectRoot, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "项目打包下载失败");
+        }
+        files.sort(Comparator.comparing(file -> toEntryName(projectRoot, file)));
+        return files;
+    }
+
+    /**
+     * 检查文件或目录名是否需要过滤
+     */
+    private boolean isIgnored(String name) {
+        return IGNORED_NAMES.contains(name) || IGNORED_EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+
+    /**
+     * 压缩到缓存目录：每个文件只读取一次，读取时同时更新内容哈希（相对路径 + 文件内容的 SHA-256），
+     * 完成后按实际写入内容的哈希原子重命名为缓存文件，保证压缩包与 ETag 一致
+     */
+    private ProjectArchiveCache.CachedArchive writeArchive(Path projectRoot, List<Path> files, Path cacheDir) {
+        Path tempPath = cacheDir.resolve("." + IdUtil.fastSimpleUUID() + ".tmp");
+        try {
+            Files.createDirectories(cacheDir);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (ZipOutputStream zipOut = new ZipOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempPath)), StandardCharsets.UTF_8)) {
+                for (Path file : files) {
+                    String entryName = toEntryName(projectRoot, file);
+                    digest.update(entryName.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    ZipEntry entry = new ZipEntry(entryName);
+                    entry.setTime(Files.getLastModifiedTime(file).toMillis());
+                    zipOut.putNextEntry(entry);
+                    try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                        in.transferTo(zipOut);
+                    }
+                    zipOut.closeEntry();
+                    digest.update((byte) 0);
+                }
+            }
+            String contentHash = HexUtil.encodeHexStr(digest.digest());
+            Path archivePath = cacheDir.resolve(contentHash + ".zip");
+            if (Files.isRegularFile(archivePath)) {
+                // 内容相同的压缩包已存在（可能正被其他请求读取），复用即可
+                Files.deleteIfExists(tempPath);
+            } else {
+                Files.move(tempPath, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            deleteOtherArchives(cacheDir, archivePath);
+            return new ProjectArchiveCache.CachedArchive(contentHash, archivePath);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            FileUtil.del(tempPath);
+            log.error("项目打包下载异常", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "项目打包下载失败");
+        }
+    }
+
+    /**
+     * 同一项目只保留最新的压缩包，尽力清理：文件正被其他请求读取（Windows 下无法删除）等失败只记录日志，不影响本次下载
+     */
+    private void deleteOtherArchives(Path cacheDir, Path archivePath) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*.zip")) {
+            for (Path old : stream) {
+                if (old.equals(archivePath)) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(old);
+                } catch (IOException e) {
+                    log.warn("清理旧的项目压缩包失败: {}, 错误信息: {}", old, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理旧的项目压缩包失败: {}, 错误信息: {}", cacheDir, e.getMessage());
+        }
+    }
+
+    /**
+     * 返回压缩包缓存文件，支持 ETag 协商缓存和单区间 Range 请求
+     *
+     * @return 是否已响应；缓存文件已被并发的打包清理时返回 false（尚未写入响应），由调用方按未命中重新打包
+     */
+    private boolean serveArchive(ProjectArchiveCache.CachedArchive archive, String downloadFileName,
+                                 HttpServletRequest request, HttpServletResponse response) {
+        FileChannel opened;
         try {
-            // 使用 Hutool 的 ZipUtil 直接将过滤后的目录压缩到响应输出流
-            ZipUtil.zip(response.getOutputStream(), StandardCharsets.UTF_8, false, filter, projectDir);
+            opened = FileChannel.open(archive.archivePath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            log.info("项目压缩包缓存文件已被清理，重新打包: {}", archive.archivePath());
+            return false;
+        } catch (IOException e) {
+            log.error("项目打包下载异常", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "项目打包下载失败");
+        }
+        setDownloadHeaders(response, downloadFileName, archive.contentHash());
+        try (FileChannel channel = opened) {
+            if (isNotModified(request, archive.contentHash())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+            long length = channel.size();
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader("Range");
+            String ifRange = request.getHeader("If-Range");
+            if (range != null && (ifRange == null || ifRange.equals(toETag(archive.contentHash())))) {
+                long[] bounds = parseRange(range, length);
+                if (bounds == null) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    return true;
+                }
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, length));
+            } else {
+                response.setStatus(HttpServletResponse.SC_OK);
+            }
+            long remaining = end - start + 1;
+            response.setContentLengthLong(remaining);
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
             log.info("项目打包下载完成: {}", downloadFileName);
-        } catch (Exception e) {
+            return true;
+        } catch (IOException e) {
             log.error("项目打包下载异常", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "项目打包下载失败");
         }
     }
 
+    /**
+     * 解析单区间 Range 头（bytes=start-end / bytes=start- / bytes=-suffix），
+     * 多区间或格式不正确时按完整下载处理
+     *
+     * @return [start, end]；区间无法满足时返回 null
+     */
+    private long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[]{0, length - 1};
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[]{0, length - 1};
+        }
+        try {
+            String startText = spec.substring(0, dash).trim();
+            String endText = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (startText.isEmpty()) {
+                long suffix = Long.parseLong(endText);
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(startText);
+                end = endText.isEmpty() ? length - 1 : Math.min(Long.parseLong(endText), length - 1);
+            }
+            return start <= end && start < length ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return new long[]{0, length - 1};
+        }
+    }
+
+    private void setDownloadHeaders(HttpServletResponse response, String downloadFileName, String contentHash) {
+        response.setContentType("application/zip");
+        response.addHeader("Content-Disposition",
+                String.format("attachment; filename=\"%s.zip\"", downloadFileName));
+        response.setHeader("ETag", toETag(contentHash));
+        response.setHeader("Accept-Ranges", "bytes");
+        // 内容哈希即 ETag，每次请求重新校验
+        response.setHeader("Cache-Control", "private, no-cache");
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String contentHash) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        return ifNoneMatch != null && ifNoneMatch.contains(toETag(contentHash));
+    }
+
+    private String toETag(String contentHash) {
+        return "\"" + contentHash + "\"";
+    }
+
+    /**
+     * 压缩包内的条目名（统一使用 / 分隔）
+     */
+    private String toEntryName(Path projectRoot, Path file) {
+        return projectRoot.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
 }
@@ -0,0 +1,279 @@
+package com.example.codemother.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.mapper.AppMapper;
+import com.example.codemother.model.entity.App;
+import com.example.codemother.service.ScreenshotJobService;
+import com.example.codemother.service.ScreenshotService;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriverException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLTransientException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 应用截图任务服务实现
+ * 同一应用未执行的截图任务合并为一个（最新 URL 生效），提交后延迟一小段时间再执行，连续部署只截图一次；
+ * 并发数有上限，超时、浏览器和网络等暂时性失败按指数退避重试，业务或配置错误直接放弃；
+ * 未完成的任务持久化到本地文件，重启后继续执行。
+ *
+ * @author kkoma
+ */
+@Slf4j
+@Service
+public class ScreenshotJobServiceImpl implements ScreenshotJobService {
+
+    /**
+     * 未完成任务的持久化文件
+     */
+    private static final String JOB_STORE_PATH = System.getProperty("user.dir") + "/tmp/screenshot_jobs.json";
+
+    @Autowired
+    private ScreenshotService screenshotService;
+
+    @Autowired
+    private AppMapper appMapper;
+
+    /**
+     * 同时执行的截图任务数
+     */
+    @Value("${screenshot.job.concurrency:2}")
+    private int concurrency;
+
+    /**
+     * 最大尝试次数
+     */
+    @Value("${screenshot.job.max-attempts:5}")
+    private int maxAttempts;
+
+    /**
+     * 提交后延迟执行的时间（毫秒），合并短时间内的重复部署
+     */
+    @Value("${screenshot.job.debounce-millis:2000}")
+    private long debounceMillis;
+
+    /**
+     * 首次重试的退避时间（毫秒），之后每次翻倍
+     */
+    @Value("${screenshot.job.retry-backoff-millis:5000}")
+    private long retryBackoffMillis;
+
+    /**
+     * 等待执行的任务（appId -> 任务）
+     */
+    private final Map<Long, ScreenshotJob> pendingJobs = new LinkedHashMap<>();
+
+    /**
+     * 执行中的任务（appId -> 任务）
+     */
+    private final Map<Long, ScreenshotJob> runningJobs = new HashMap<>();
+
+    private Thread dispatcher;
+
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void init() {
+        loadJobs();
+        dispatcher = Thread.ofVirtual().name("screenshot-job-dispatcher").start(this::dispatchLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        dispatcher.interrupt();
+        synchronized (this) {
+            persistJobs();
+        }
+    }
+
+    @Override
+    public void submit(Long appId, String appUrl) {
+        synchronized (this) {
+            pendingJobs.put(appId, new ScreenshotJob(appId, appUrl, 0, System.currentTimeMillis() + debounceMillis));
+            persistJobs();
+            notifyAll();
+        }
+        log.info("提交应用截图任务，appId: {}，URL: {}", appId, appUrl);
+    }
+
+    /**
+     * 调度循环：取出到期且所属应用未在执行的任务，在并发上限内启动执行
+     */
+    private void dispatchLoop() {
+        while (!stopped) {
+            try {
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    long nextDue = Long.MAX_VALUE;
+                    ScreenshotJob ready = null;
+                    if (runningJobs.size() < concurrency) {
+                        for (ScreenshotJob job : pendingJobs.values()) {
+                            if (runningJobs.containsKey(job.appId)) {
+                                continue;
+                            }
+                            if (job.notBefore <= now) {
+                                ready = job;
+                                break;
+                            }
+                            nextDue = Math.min(nextDue, job.notBefore);
+                        }
+                    }
+                    if (ready == null) {
+                        long waitMillis = nextDue == Long.MAX_VALUE ? 0 : Math.max(1, nextDue - now);
+                        wait(waitMillis);
+                        continue;
+                    }
+                    pendingJobs.remove(ready.appId);
+                    runningJobs.put(ready.appId, ready);
+                    ScreenshotJob job = ready;
+                    Thread.ofVirtual().name("screenshot-job-" + job.appId).start(() -> execute(job));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 执行截图任务并更新应用封面
+     */
+    private void execute(ScreenshotJob job) {
+        boolean success = false;
+        boolean retryable = false;
+        try {
+            String screenshotUrl = screenshotService.generateAndUploadScreenshot(job.appUrl);
+            App updateApp = new App();
+            updateApp.setId(job.appId);
+            updateApp.setCover(screenshotUrl);
+            success = appMapper.update(updateApp) > 0;
+            if (!success) {
+                log.error("更新应用封面字段失败（应用可能已删除），放弃任务，appId: {}", job.appId);
+            }
+        } catch (Exception e) {
+            retryable = isTransient(e);
+            if (retryable) {
+                log.warn("应用截图失败，appId: {}，第 {} 次尝试: {}", job.appId, job.attempts + 1, e.getMessage());
+            } else {
+                log.error("应用截图失败且不可重试，放弃任务，appId: {}", job.appId, e);
+            }
+        } finally {
+            synchronized (this) {
+                runningJobs.remove(job.appId);
+                int attempts = job.attempts + 1;
+                // 执行期间有新的提交时以新任务为准，不再重试旧 URL
+                if (retryable && !stopped && !pendingJobs.containsKey(job.appId)) {
+                    if (attempts < maxAttempts) {
+                        long backoff = retryBackoffMillis << Math.min(attempts - 1, 10);
+                        pendingJobs.put(job.appId, new ScreenshotJob(job.appId, job.appUrl, attempts,
+                                System.currentTimeMillis() + backoff));
+                        log.info("应用截图将在 {} 毫秒后重试，appId: {}", backoff, job.appId);
+                    } else {
+                        log.error("应用截图重试次数已用尽，放弃任务，appId: {}", job.appId);
+                    }
+                }
+                persistJobs();
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 判断失败是否为暂时性错误（超时、浏览器驱动、IO、对象存储网络或服务端错误、数据库暂时性错误），
+     * 业务异常（如未启用 COS、参数错误）和其他错误重试也不会成功，直接放弃
+     */
+    private boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BusinessException) {
+                return false;
+            }
+            if (cause instanceof CosServiceException serviceException) {
+                return serviceException.getStatusCode() >= 500 || serviceException.getStatusCode() == 429;
+            }
+            if (cause instanceof TimeoutException
+                    || cause instanceof WebDriverException
+                    || cause instanceof IOException
+                    || cause instanceof UncheckedIOException
+                    || cause instanceof CosClientException
+                    || cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof SQLTransientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 持久化未完成的任务（执行中的任务一并保存，重启后重新执行），调用方需持有锁
+     */
+    private void persistJobs() {
+        JSONArray jobs = new JSONArray();
+        Map<Long, ScreenshotJob> unfinished = new LinkedHashMap<>(runningJobs);
+        unfinished.putAll(pendingJobs);
+        for (ScreenshotJob job : unfinished.values()) {
+            jobs.add(new JSONObject()
+                    .set("appId", job.appId)
+                    .set("appUrl", job.appUrl)
+                    .set("attempts", job.attempts));
+        }
+        try {
+            File storeFile = new File(JOB_STORE_PATH);
+            File tempFile = new File(JOB_STORE_PATH + ".tmp");
+            FileUtil.writeUtf8String(jobs.toString(), tempFile);
+            Files.move(tempFile.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("持久化截图任务失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时加载上次未完成的任务
+     */
+    private synchronized void loadJobs() {
+        File storeFile = new File(JOB_STORE_PATH);
+        if (!storeFile.isFile()) {
+            return;
+        }
+        try {
+            JSONArray jobs = JSONUtil.parseArray(FileUtil.readUtf8String(storeFile));
+            long now = System.currentTimeMillis();
+            for (JSONObject job : jobs.jsonIter()) {
+                Long appId = job.getLong("appId");
+                pendingJobs.put(appId, new ScreenshotJob(appId, job.getStr("appUrl"), job.getInt("attempts", 0), now));
+            }
+            log.info("恢复未完成的截图任务 {} 个", pendingJobs.size());
+        } catch (Exception e) {
+            log.warn("加载截图任务失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 截图任务
+     */
+    private record ScreenshotJob(Long appId, String appUrl, int attempts, long notBefore) {
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.codemother.service.impl;
 
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.StrUtil;
 import com.example.codemother.exception.ErrorCode;
@@ -10,9 +9,9 @@ import com.example.codemother.service.ScreenshotService;
 import com.example.codemother.utils.WebScreenshotUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
@@ -23,49 +22,33 @@ public class ScreenshotServiceImpl implements ScreenshotService {
     @Autowired(required = false)
     private CosManager cosManager;
 
+    /**
+     * 截图 JPEG 质量（0~1）
+     */
+    @Value("${screenshot.jpeg-quality:0.3}")
+    private float jpegQuality;
+
+    /**
+     * 截图最大宽度（缩略图），0 表示保持原始尺寸
+     */
+    @Value("${screenshot.max-width:0}")
+    private int maxWidth;
+
     @Override
     public String generateAndUploadScreenshot(String webUrl) {
         ThrowUtils.throwIf(StrUtil.isBlank(webUrl), ErrorCode.PARAMS_ERROR, "网页URL不能为空");
+        // 本地或非生产环境未启用 COS 时，直接降级为不截图
+        ThrowUtils.throwIf(cosManager == null, ErrorCode.OPERATION_ERROR, "当前环境未启用 COS，跳过截图");
         log.info("开始生成网页截图，URL: {}", webUrl);
-        // 1. 生成本地截图
-        String localScreenshotPath = WebScreenshotUtils.saveWebPageScreenshot(webUrl);
-        ThrowUtils.throwIf(StrUtil.isBlank(localScreenshotPath), ErrorCode.OPERATION_ERROR, "本地截图生成失败");
-        try {
-            // 2. 上传到对象存储
-            String cosUrl = uploadScreenshotToCos(localScreenshotPath);
-            ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "截图上传对象存储失败");
-            log.info("网页截图生成并上传成功: {} -> {}", webUrl, cosUrl);
-            return cosUrl;
-        } finally {
-            // 3. 清理本地文件
-            cleanupLocalFile(localScreenshotPath);
-        }
-    }
-
-    /**
-     * 上传截图到对象存储
-     *
-     * @param localScreenshotPath 本地截图路径
-     * @return 对象存储访问URL，失败返回null
-     */
-    private String uploadScreenshotToCos(String localScreenshotPath) {
-        // 本地或非生产环境未启用 COS 时，直接降级为不上传
-        if (cosManager == null) {
-            log.info("当前环境未启用 COS，跳过截图上传");
-            return null;
-        }
-        if (StrUtil.isBlank(localScreenshotPath)) {
-            return null;
-        }
-        File screenshotFile = new File(localScreenshotPath);
-        if (!screenshotFile.exists()) {
-            log.error("截图文件不存在: {}", localScreenshotPath);
-            return null;
-        }
-        // 生成 COS 对象键
+        // 1. 在内存中生成压缩截图
+        byte[] screenshotBytes = WebScreenshotUtils.takeWebPageScreenshot(webUrl, jpegQuality, maxWidth);
+        ThrowUtils.throwIf(screenshotBytes == null, ErrorCode.OPERATION_ERROR, "截图生成失败");
+        // 2. 直接上传到对象存储
         String fileName = UUID.randomUUID().toString().substring(0, 8) + "_compressed.jpg";
-        String cosKey = generateScreenshotKey(fileName);
-        return cosManager.uploadFile(cosKey, screenshotFile);
+        String cosUrl = cosManager.uploadBytes(generateScreenshotKey(fileName), screenshotBytes, "image/jpeg");
+        ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "截图上传对象存储失败");
+        log.info("网页截图生成并上传成功: {} -> {}", webUrl, cosUrl);
+        return cosUrl;
     }
 
     /**
@@ -76,18 +59,4 @@ public class ScreenshotServiceImpl implements ScreenshotService {
         String datePath = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
         return String.format("/screenshots/%s/%s", datePath, fileName);
     }
-
-    /**
-     * 清理本地文件
-     *
-     * @param localFilePath 本地文件路径
-     */
-    private void cleanupLocalFile(String localFilePath) {
-        File localFile = new File(localFilePath);
-        if (localFile.exists()) {
-            File parentDir = localFile.getParentFile();
-            FileUtil.del(parentDir);
-            log.info("本地截图文件已清理: {}", localFilePath);
-        }
-    }
 }
@@ -6,6 +6,7 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
+import com.example.codemother.manager.LoginSessionManager;
 import com.example.codemother.model.dto.user.UserQueryRequest;
 import com.example.codemother.model.enums.UserRoleEnum;
 import com.example.codemother.model.vo.LoginUserVO;
@@ -15,18 +16,25 @@ import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.example.codemother.model.entity.User;
 import com.example.codemother.mapper.UserMapper;
 import com.example.codemother.service.UserService;
+import com.example.codemother.utils.VOConverter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
-import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
 
+import java.io.Serializable;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
-import static com.example.codemother.constant.UserConstant.USER_LOGIN_STATE;
-
 /**
  * 用户 服务层实现。
  *
@@ -36,6 +44,48 @@ import static com.example.codemother.constant.UserConstant.USER_LOGIN_STATE;
 @Service
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements UserService {
 
+    /**
+     * 请求内已解析的登录用户
+     */
+    private static final String LOGIN_USER_REQUEST_ATTRIBUTE = UserServiceImpl.class.getName() + ".loginUser";
+
+    @Autowired
+    private LoginSessionManager loginSessionManager;
+
+    /**
+     * 登录用户缓存的最大用户数
+     */
+    @Value("${user-cache.max-size:10000}")
+    private long userCacheMaxSize;
+
+    /**
+     * 登录用户缓存的过期时间（秒），兜底其他实例上的修改
+     */
+    @Value("${user-cache.ttl-seconds:30}")
+    private long userCacheTtlSeconds;
+
+    /**
+     * 登录用户缓存（userId -> 用户）
+     */
+    private Cache<Long, User> userCache;
+
+    /**
+     * 用户 VO 缓存（userId -> 脱敏用户），应用列表等组装 VO 时共享
+     */
+    private Cache<Long, UserVO> userVOCache;
+
+    @PostConstruct
+    public void init() {
+        userCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(userCacheTtlSeconds))
+                .build();
+        userVOCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(userCacheTtlSeconds))
+                .build();
+    }
+
     //注册
     @Override
     public long userAdd(String userAccount, String password, String checkPassword) {
@@ -85,9 +135,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         if (user == null) {
             return null;
         }
-        LoginUserVO loginUserVO = new LoginUserVO();
-        BeanUtils.copyProperties(user, loginUserVO);
-        return loginUserVO;
+        return VOConverter.toLoginUserVO(user);
     }
 
     //登录
@@ -132,8 +180,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         }
 
         // ==================== 会话管理阶段 ====================
-        // 将用户信息存入Session，标记用户登录状态
-        request.getSession().setAttribute(USER_LOGIN_STATE, user);
+        // 在 Redis 中创建会话（只保存用户 id、角色和会话代数），并下发会话 Cookie
+        loginSessionManager.createSession(user, request);
 
         // ==================== 返回结果处理 ====================
         // 将User实体转换为前端需要的LoginUserVO对象并返回
@@ -143,54 +191,87 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Override
     public User getLoginUser(HttpServletRequest request) {
 
-        // ==================== 从Session中获取用户信息 ====================
-        // 从HTTP Session中获取用户登录状态属性
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        // 将Object类型强制转换为User类型
-        User currentUser = (User) userObj;
+        // ==================== 从会话中获取登录主体 ====================
+        // 按会话 Cookie 解析登录主体（近端缓存 -> Redis），会话同时滑动续期
+        LoginSessionManager.LoginPrincipal principal = loginSessionManager.resolve(request);
 
         // ==================== 初步校验用户登录状态 ====================
-        // 检查Session中的用户对象是否存在或用户ID是否为空
-        if (currentUser == null || currentUser.getId() == null) {
+        // 检查会话是否存在
+        if (principal == null) {
             // 如果未找到用户信息，抛出未登录异常
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
 
-        // ==================== 重新查询数据库获取最新用户信息 ====================
-        // 获取用户ID
-        long userId = currentUser.getId();
-        // 根据用户ID从数据库中重新查询用户信息（确保获取最新数据）
-        currentUser = this.getById(userId);
+        // ==================== 请求内复用已解析的用户 ====================
+        // 同一请求中拦截器、限流切面和控制器都会调用本方法，只解析一次
+        Object resolved = request.getAttribute(LOGIN_USER_REQUEST_ATTRIBUTE);
+        if (resolved instanceof User resolvedUser && resolvedUser.getId() == principal.userId()) {
+            return resolvedUser;
+        }
+
+        // ==================== 从用户缓存获取最新用户信息 ====================
+        // 短 TTL 缓存代替每次按主键查库，用户更新或删除时主动失效
+        long userId = principal.userId();
+        User cachedUser = userCache.get(userId, this::getById);
 
         // ==================== 最终校验用户有效性 ====================
         // 检查数据库中的用户是否存在（防止用户被删除等情况）
-        if (currentUser == null) {
+        if (cachedUser == null) {
             // 如果数据库中没有该用户，抛出未登录异常
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
 
         // ==================== 返回有效的用户信息 ====================
-        // 返回从数据库中获取的最新用户信息
+        // 返回副本，避免调用方修改缓存中的对象
+        User currentUser = BeanUtil.copyProperties(cachedUser, User.class);
+        request.setAttribute(LOGIN_USER_REQUEST_ATTRIBUTE, currentUser);
         return currentUser;
     }
 
     @Override
-    public boolean userLogout(HttpServletRequest request) {
+    public boolean updateById(User entity) {
+        // 角色变更时使该用户已有的会话失效，会话中的角色不会过期
+        boolean roleChanged = false;
+        if (entity != null && entity.getId() != null && entity.getUserRole() != null) {
+            User oldUser = super.getById(entity.getId());
+            roleChanged = oldUser != null && !entity.getUserRole().equals(oldUser.getUserRole());
+        }
+        boolean result = super.updateById(entity);
+        if (entity != null && entity.getId() != null) {
+            userCache.invalidate(entity.getId());
+            userVOCache.invalidate(entity.getId());
+            if (result && roleChanged) {
+                loginSessionManager.invalidateUserSessions(entity.getId());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean result = super.removeById(id);
+        if (id != null) {
+            userCache.invalidate(Long.valueOf(id.toString()));
+            userVOCache.invalidate(Long.valueOf(id.toString()));
+            if (result) {
+                loginSessionManager.invalidateUserSessions(Long.parseLong(id.toString()));
+            }
+        }
+        return result;
+    }
 
-        // ==================== 登录状态检查 ====================
-        // 从Session中获取用户登录状态属性
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
+    @Override
+    public boolean userLogout(HttpServletRequest request) {
 
-        // 检查用户是否已登录：如果Session中没有用户信息，说明未登录
-        if (userObj == null) {
+        // ==================== 执行登出操作 ====================
+        // 删除 Redis 中的会话并清除会话 Cookie
+        request.removeAttribute(LOGIN_USER_REQUEST_ATTRIBUTE);
+        // 检查用户是否已登录：没有会话说明未登录
+        if (!loginSessionManager.removeSession(request)) {
             // 抛出业务异常，提示用户未登录，无需执行登出操作
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "未登录");
         }
 
-        // ==================== 执行登出操作 ====================
-        // 移除Session中的用户登录状态属性，清除登录态
-        request.getSession().removeAttribute(USER_LOGIN_STATE);
-
         // ==================== 返回登出结果 ====================
         // 返回true表示登出操作成功完成
         return true;
@@ -203,15 +284,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             return null;
         }
 
-        // 创建目标VO对象实例
-        UserVO userVO = new UserVO();
-
-        // 属性拷贝：使用BeanUtil工具类将User对象的属性值拷贝到UserVO对象中
-        // 注意：两个对象的字段名和类型需要保持一致才能正确拷贝
-        BeanUtil.copyProperties(user, userVO);
-
-        // 返回转换后的VO对象
-        return userVO;
+        // 逐字段转换为VO对象（不经过反射拷贝）
+        return VOConverter.toUserVO(user);
     }
 
     @Override
@@ -230,6 +304,16 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Map<Long, UserVO> getUserVOMap(Collection<Long> userIds) {
+        if (CollUtil.isEmpty(userIds)) {
+            return Map.of();
+        }
+        // 缓存未命中的用户合并为一次 IN 查询
+        return userVOCache.getAll(userIds, missingIds -> this.listByIds(missingIds).stream()
+                .collect(Collectors.toMap(User::getId, VOConverter::toUserVO)));
+    }
+
 
 
     //盐值加密
@@ -53,3 +53,20 @@ create table chat_history
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
     INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
+
+
+-- 对话历史归档表（冷数据，按段压缩存储）
+create table chat_history_archive
+(
+    id              bigint auto_increment comment 'id' primary key,
+    appId           bigint                             not null comment '应用id',
+    firstId         bigint                             not null comment '段内最早消息id',
+    lastId          bigint                             not null comment '段内最新消息id',
+    firstCreateTime datetime                           not null comment '段内最早消息创建时间',
+    lastCreateTime  datetime                           not null comment '段内最新消息创建时间',
+    messageCount    int                                not null comment '消息条数',
+    codec           varchar(16)                        not null comment '压缩算法',
+    content         longblob                           not null comment '压缩后的消息（JSON 数组）',
+    createTime      datetime default CURRENT_TIMESTAMP not null comment '归档时间',
+    INDEX idx_appId (appId) -- 按应用查询归档段（二级索引隐含主键，按 id 倒序即按时间倒序）
+) comment '对话历史归档' collate = utf8mb4_unicode_ci;
@@ -0,0 +1,84 @@
+package com.example.codemother.utils;
+
+import com.example.codemother.constant.AppConstant;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 项目下载压缩包缓存索引
+ * 以生成目录名（{codeType}_{appId}）为键记录最近一次打包结果，保存器和文件工具写入时调用 {@link #invalidate(Path)} 失效；
+ * 压缩包文件按打包时实际写入内容的哈希命名存放在磁盘上，该哈希同时作为下载的 ETag。
+ *
+ * @author kkoma
+ */
+public class ProjectArchiveCache {
+
+    /**
+     * 压缩包缓存目录
+     */
+    public static final String ARCHIVE_CACHE_DIR = System.getProperty("user.dir") + "/tmp/download_cache";
+
+    private static final Path OUTPUT_ROOT = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR).toAbsolutePath().normalize();
+
+    private static final ConcurrentHashMap<String, CachedArchive> ARCHIVES = new ConcurrentHashMap<>();
+
+    /**
+     * 各目录的写入版本，打包期间目录被写入时放弃登记，避免缓存旧内容
+     */
+    private static final ConcurrentHashMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
+    private ProjectArchiveCache() {
+    }
+
+    /**
+     * 已缓存的压缩包
+     *
+     * @param contentHash 目录内容哈希（同时作为 ETag）
+     * @param archivePath 压缩包路径
+     */
+    public record CachedArchive(String contentHash, Path archivePath) {
+    }
+
+    public static CachedArchive get(String projectDirName) {
+        return ARCHIVES.get(projectDirName);
+    }
+
+    /**
+     * 当前写入版本，登记缓存时传回用于校验
+     */
+    public static long currentVersion(String projectDirName) {
+        return VERSIONS.computeIfAbsent(projectDirName, k -> new AtomicLong()).get();
+    }
+
+    /**
+     * 登记压缩包，打包期间目录被写入（版本变化）时不登记
+     */
+    public static void put(String projectDirName, long version, CachedArchive archive) {
+        synchronized (VERSIONS.computeIfAbsent(projectDirName, k -> new AtomicLong())) {
+            if (currentVersion(projectDirName) == version) {
+                ARCHIVES.put(projectDirName, archive);
+            }
+        }
+    }
+
+    /**
+     * 生成目录下的文件发生写入，失效所属项目的压缩包缓存
+     *
+     * @param writtenPath 被写入的文件或目录
+     */
+    public static void invalidate(Path writtenPath) {
+        Path path = writtenPath.toAbsolutePath().normalize();
+        if (!path.startsWith(OUTPUT_ROOT) || path.equals(OUTPUT_ROOT)) {
+            return;
+        }
+        String projectDirName = OUTPUT_ROOT.relativize(path).getName(0).toString();
+        AtomicLong version = VERSIONS.computeIfAbsent(projectDirName, k -> new AtomicLong());
+        synchronized (version) {
+            version.incrementAndGet();
+            ARCHIVES.remove(projectDirName);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.codemother.utils;
+
+import com.example.codemother.model.entity.App;
+import com.example.codemother.model.entity.User;
+import com.example.codemother.model.vo.AppVO;
+import com.example.codemother.model.vo.LoginUserVO;
+import com.example.codemother.model.vo.UserVO;
+
+/**
+ * 实体到 VO 的转换
+ * 逐字段手写赋值，代替基于反射的属性拷贝；实体或 VO 增减字段时需同步修改。
+ *
+ * @author kkoma
+ */
+public class VOConverter {
+
+    private VOConverter() {
+    }
+
+    /**
+     * 应用实体转 VO（不含创建用户信息）
+     */
+    public static AppVO toAppVO(App app) {
+        if (app == null) {
+            return null;
+        }
+        AppVO appVO = new AppVO();
+        appVO.setId(app.getId());
+        appVO.setAppName(app.getAppName());
+        appVO.setCover(app.getCover());
+        appVO.setInitPrompt(app.getInitPrompt());
+        appVO.setCodeGenType(app.getCodeGenType());
+        appVO.setDeployKey(app.getDeployKey());
+        appVO.setDeployedTime(app.getDeployedTime());
+        appVO.setPriority(app.getPriority());
+        appVO.setUserId(app.getUserId());
+        appVO.setCreateTime(app.getCreateTime());
+        appVO.setUpdateTime(app.getUpdateTime());
+        return appVO;
+    }
+
+    /**
+     * 用户实体转脱敏 VO
+     */
+    public static UserVO toUserVO(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserVO userVO = new UserVO();
+        userVO.setId(user.getId());
+        userVO.setUserAccount(user.getUserAccount());
+        userVO.setUserName(user.getUserName());
+        userVO.setUserAvatar(user.getUserAvatar());
+        userVO.setUserProfile(user.getUserProfile());
+        userVO.setUserRole(user.getUserRole());
+        userVO.setCreateTime(user.getCreateTime());
+        return userVO;
+    }
+
+    /**
+     * 用户实体转登录用户 VO
+     */
+    public static LoginUserVO toLoginUserVO(User user) {
+        if (user == null) {
+            return null;
+        }
+        LoginUserVO loginUserVO = new LoginUserVO();
+        loginUserVO.setId(user.getId());
+        loginUserVO.setUserAccount(user.getUserAccount());
+        loginUserVO.setUserName(user.getUserName());
+        loginUserVO.setUserAvatar(user.getUserAvatar());
+        loginUserVO.setUserProfile(user.getUserProfile());
+        loginUserVO.setUserRole(user.getUserRole());
+        loginUserVO.setCreateTime(user.getCreateTime());
+        loginUserVO.setUpdateTime(user.getUpdateTime());
+        return loginUserVO;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.codemother.utils;
+
+import com.example.codemother.exception.BusinessException;
+import com.example.codemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 浏览器驱动池
+ * 按需懒创建驱动，最多同时存在 maxSize 个；借出前做健康检查，使用次数达到上限或出错后销毁重建，
+ * 避免长期运行的浏览器进程内存膨胀。
+ *
+ * @author kkoma
+ */
+@Slf4j
+public class WebDriverPool {
+
+    private final int maxSize;
+
+    private final int maxUses;
+
+    private final Supplier<WebDriver> driverFactory;
+
+    /**
+     * 借出许可，保证同时存在的驱动不超过 maxSize
+     */
+    private final Semaphore permits;
+
+    private final ConcurrentLinkedDeque<PooledDriver> idleDrivers = new ConcurrentLinkedDeque<>();
+
+    private volatile boolean closed;
+
+    public WebDriverPool(int maxSize, int maxUses, Supplier<WebDriver> driverFactory) {
+        this.maxSize = maxSize;
+        this.maxUses = maxUses;
+        this.driverFactory = driverFactory;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * 借出驱动，使用完毕必须调用 {@link #release(PooledDriver, boolean)} 归还
+     *
+     * @param timeoutSeconds 等待空闲驱动的超时时间（秒）
+     * @return 驱动
+     * @throws TimeoutException 超时仍无空闲驱动
+     */
+    public PooledDriver lease(long timeoutSeconds) {
+        if (closed) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "浏览器驱动池已关闭");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new TimeoutException("等待空闲浏览器驱动超时，截图浏览器繁忙");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待截图浏览器被中断");
+        }
+        try {
+            PooledDriver pooled;
+            while ((pooled = idleDrivers.pollFirst()) != null) {
+                if (isHealthy(pooled.getDriver())) {
+                    return pooled;
+                }
+                log.warn("浏览器驱动健康检查失败，销毁重建");
+                quit(pooled);
+            }
+            log.info("创建新的浏览器驱动，池上限: {}", maxSize);
+            return new PooledDriver(driverFactory.get());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还驱动
+     *
+     * @param pooled 借出的驱动
+     * @param broken 使用过程中是否出错（出错的驱动直接销毁）
+     */
+    public void release(PooledDriver pooled, boolean broken) {
+        try {
+            pooled.uses++;
+            if (closed || broken || pooled.uses >= maxUses) {
+                quit(pooled);
+                return;
+            }
+            try {
+                // 跳转空白页释放页面占用的内存和脚本
+                pooled.getDriver().get("about:blank");
+                idleDrivers.offerFirst(pooled);
+            } catch (Exception e) {
+                quit(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 关闭驱动池，销毁所有空闲驱动（借出中的驱动归还时销毁）
+     */
+    public void shutdown() {
+        closed = true;
+        PooledDriver pooled;
+        while ((pooled = idleDrivers.pollFirst()) != null) {
+            quit(pooled);
+        }
+    }
+
+    private boolean isHealthy(WebDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void quit(PooledDriver pooled) {
+        try {
+            pooled.getDriver().quit();
+        } catch (Exception e) {
+            log.warn("关闭浏览器驱动失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 池化的驱动，记录使用次数
+     */
+    public static class PooledDriver {
+
+        private final WebDriver driver;
+
+        private int uses;
+
+        private PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        public WebDriver getDriver() {
+            return driver;
+        }
+    }
+}
@@ -1,14 +1,9 @@
 package com.example.codemother.utils;
 
-import cn.hutool.core.img.ImgUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.lang.UUID;
-import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.example.codemother.exception.BusinessException;
 import com.example.codemother.exception.ErrorCode;
 import io.github.bonigarcia.wdm.WebDriverManager;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
@@ -18,23 +13,65 @@ import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
-import java.io.File;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.Duration;
 
 @Slf4j
 public class WebScreenshotUtils {
 
-    private static final WebDriver webDriver;
+    private static final int DEFAULT_WIDTH = 1600;
 
-    static {
-        final int DEFAULT_WIDTH = 1600;
-        final int DEFAULT_HEIGHT = 900;
-        webDriver = initChromeDriver(DEFAULT_WIDTH, DEFAULT_HEIGHT);
-    }
+    private static final int DEFAULT_HEIGHT = 900;
+
+    /**
+     * 驱动池大小：按 CPU 核数伸缩（每个 Chrome 进程约占一个核）
+     */
+    private static final int POOL_SIZE = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * 单个驱动最多使用次数，达到后销毁重建，避免浏览器进程内存膨胀
+     */
+    private static final int MAX_DRIVER_USES = 50;
+
+    /**
+     * 等待空闲驱动的超时时间（秒）
+     */
+    private static final long LEASE_TIMEOUT_SECONDS = 60;
+
+    /**
+     * 页面稳定判定：DOM 在该时长内无变化即视为渲染完成
+     */
+    private static final long DOM_STABLE_MILLIS = 300;
+
+    /**
+     * 页面快照脚本：资源未加载完成时返回 null，否则返回 DOM 规模摘要，用于判断页面是否稳定
+     */
+    private static final String PAGE_SNAPSHOT_SCRIPT = """
+            if (document.fonts && document.fonts.status !== 'loaded') return null;
+            for (const img of document.images) { if (!img.complete) return null; }
+            const body = document.body;
+            return body ? body.getElementsByTagName('*').length + ':' + body.innerHTML.length : null;
+            """;
+
+    /**
+     * 浏览器驱动池（首次截图时才启动浏览器）
+     */
+    private static final WebDriverPool DRIVER_POOL = new WebDriverPool(POOL_SIZE, MAX_DRIVER_USES,
+            () -> initChromeDriver(DEFAULT_WIDTH, DEFAULT_HEIGHT));
 
-    @PreDestroy
-    public void destroy() {
-        webDriver.quit();
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DRIVER_POOL::shutdown, "web-driver-pool-shutdown"));
     }
 
     /**
@@ -74,97 +111,123 @@ public class WebScreenshotUtils {
     }
 
     /**
-     * 保存图片到文件
-     */
-    private static void saveImage(byte[] imageBytes, String imagePath) {
-        try {
-            FileUtil.writeBytes(imageBytes, imagePath);
-        } catch (Exception e) {
-            log.error("保存图片失败: {}", imagePath, e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存图片失败");
-        }
-    }
-
-
-    /**
-     * 压缩图片
+     * 将 PNG 截图在内存中压缩为 JPEG，可选按最大宽度等比缩小
+     *
+     * @param pngBytes 原始 PNG 截图
+     * @param quality  JPEG 质量（0~1）
+     * @param maxWidth 最大宽度，小于等于 0 表示不缩放
+     * @return JPEG 数据
      */
-    private static void compressImage(String originalImagePath, String compressedImagePath) {
-        // 压缩图片质量（0.1 = 10% 质量）
-        final float COMPRESSION_QUALITY = 0.3f;
+    private static byte[] encodeJpeg(byte[] pngBytes, float quality, int maxWidth) {
         try {
-            ImgUtil.compress(
-                    FileUtil.file(originalImagePath),
-                    FileUtil.file(compressedImagePath),
-                    COMPRESSION_QUALITY
-            );
-        } catch (Exception e) {
-            log.error("压缩图片失败: {} -> {}", originalImagePath, compressedImagePath, e);
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(pngBytes));
+            if (source == null) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "无法解析截图数据");
+            }
+            int width = source.getWidth();
+            int height = source.getHeight();
+            if (maxWidth > 0 && width > maxWidth) {
+                height = Math.max(1, Math.round(height * (maxWidth / (float) width)));
+                width = maxWidth;
+            }
+            // JPEG 不支持透明通道，绘制到 RGB 画布上（同时完成缩放）
+            BufferedImage rgbImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = rgbImage.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(pngBytes.length / 4);
+            try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+                writer.setOutput(imageOutput);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.write(null, new IIOImage(rgbImage, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return output.toByteArray();
+        } catch (IOException e) {
+            log.error("压缩截图失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "压缩图片失败");
         }
     }
 
     /**
-     * 等待页面加载完成
+     * 等待页面就绪：document.readyState 为 complete、字体和图片加载完成，且 DOM 短时间内不再变化
      */
     private static void waitForPageLoad(WebDriver driver) {
         try {
             // 创建等待页面加载对象
-            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(10));
+            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(10), Duration.ofMillis(100));
             // 等待 document.readyState 为complete
             wait.until(webDriver ->
                     ((JavascriptExecutor) webDriver).executeScript("return document.readyState")
                             .equals("complete")
             );
-            // 额外等待一段时间，确保动态内容加载完成
-            Thread.sleep(2000);
+            // 等待动态内容渲染完成（替代固定等待）
+            long[] lastChange = {System.currentTimeMillis()};
+            Object[] lastSnapshot = {null};
+            new WebDriverWait(driver, Duration.ofSeconds(5), Duration.ofMillis(100)).until(webDriver -> {
+                Object snapshot = ((JavascriptExecutor) webDriver).executeScript(PAGE_SNAPSHOT_SCRIPT);
+                long now = System.currentTimeMillis();
+                if (snapshot == null || !snapshot.equals(lastSnapshot[0])) {
+                    lastSnapshot[0] = snapshot;
+                    lastChange[0] = now;
+                    return false;
+                }
+                return now - lastChange[0] >= DOM_STABLE_MILLIS;
+            });
             log.info("页面加载完成");
         } catch (Exception e) {
             log.error("等待页面加载时出现异常，继续执行截图", e);
         }
     }
 
-
     /**
-     * 生成网页截图
+     * 生成网页截图（全程在内存中处理，不产生临时文件）
      *
-     * @param webUrl 网页URL
-     * @return 压缩后的截图文件路径，失败返回null
+     * @param webUrl   网页URL
+     * @param quality  JPEG 质量（0~1）
+     * @param maxWidth 最大宽度（生成缩略图），小于等于 0 表示保持原始尺寸
+     * @return 压缩后的 JPEG 数据，URL 为空时返回null
+     * @throws org.openqa.selenium.WebDriverException 访问网页、截图或等待空闲驱动超时（可重试）
+     * @throws BusinessException                      浏览器初始化或图片压缩失败
      */
-    public static String saveWebPageScreenshot(String webUrl) {
+    public static byte[] takeWebPageScreenshot(String webUrl, float quality, int maxWidth) {
         if (StrUtil.isBlank(webUrl)) {
             log.error("网页URL不能为空");
             return null;
         }
+        // 从驱动池借出浏览器截图，并发截图互不干扰；异常交由调用方判断是否重试
+        byte[] screenshotBytes = takeScreenshot(webUrl);
+        byte[] jpegBytes = encodeJpeg(screenshotBytes, quality, maxWidth);
+        log.info("截图压缩完成: {} 字节 -> {} 字节", screenshotBytes.length, jpegBytes.length);
+        return jpegBytes;
+    }
+
+    /**
+     * 借出驱动访问网页并截图，完成后归还驱动（出错的驱动直接销毁）
+     */
+    private static byte[] takeScreenshot(String webUrl) {
+        WebDriverPool.PooledDriver pooled = DRIVER_POOL.lease(LEASE_TIMEOUT_SECONDS);
+        boolean broken = true;
         try {
-            // 创建临时目录
-            String rootPath = System.getProperty("user.dir") + File.separator + "tmp" + File.separator + "screenshots"
-                    + File.separator + UUID.randomUUID().toString().substring(0, 8);
-            FileUtil.mkdir(rootPath);
-            // 图片后缀
-            final String IMAGE_SUFFIX = ".png";
-            // 原始截图文件路径
-            String imageSavePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + IMAGE_SUFFIX;
+            WebDriver webDriver = pooled.getDriver();
             // 访问网页
             webDriver.get(webUrl);
             // 等待页面加载完成
             waitForPageLoad(webDriver);
             // 截图
             byte[] screenshotBytes = ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.BYTES);
-            // 保存原始图片
-            saveImage(screenshotBytes, imageSavePath);
-            log.info("原始截图保存成功: {}", imageSavePath);
-            // 压缩图片
-            final String COMPRESSION_SUFFIX = "_compressed.jpg";
-            String compressedImagePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + COMPRESSION_SUFFIX;
-            compressImage(imageSavePath, compressedImagePath);
-            log.info("压缩图片保存成功: {}", compressedImagePath);
-            // 删除原始图片，只保留压缩图片
-            FileUtil.del(imageSavePath);
-            return compressedImagePath;
-        } catch (Exception e) {
-            log.error("网页截图失败: {}", webUrl, e);
-            return null;
+            broken = false;
+            return screenshotBytes;
+        } finally {
+            DRIVER_POOL.release(pooled, broken);
         }
     }
 